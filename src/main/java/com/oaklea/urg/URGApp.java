@@ -1,6 +1,7 @@
 package com.oaklea.urg;
 
 import com.oaklea.urg.controller.Controller;
+import com.oaklea.urg.model.ScoreRepository;
 import com.oaklea.urg.view.scenes.MainMenu;
 import javafx.application.Application;
 import javafx.stage.Stage;
@@ -35,4 +36,15 @@ public class URGApp extends Application {
         this.controller = new Controller(this.mainStage);
     }
 
+    /**
+     * Stops the application, making sure every score has been saved
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    @Override
+    public void stop() {
+        ScoreRepository.close();
+    }
+
 }
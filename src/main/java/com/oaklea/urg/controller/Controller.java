@@ -1,14 +1,18 @@
 package com.oaklea.urg.controller;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.ObjectInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Random;
 
 import com.oaklea.urg.model.GameLogic;
 import com.oaklea.urg.model.GameMetrics;
 import com.oaklea.urg.model.GlobalSettings;
+import com.oaklea.urg.model.LegacyMigrator;
+import com.oaklea.urg.model.LibraryIndex;
+import com.oaklea.urg.model.LibraryScanner;
+import com.oaklea.urg.model.LibraryWatcher;
+import com.oaklea.urg.model.Replay;
 import com.oaklea.urg.model.Song;
 import com.oaklea.urg.model.SongConductor;
 import com.oaklea.urg.model.SongGroup;
@@ -16,6 +20,7 @@ import com.oaklea.urg.view.UI.PauseScreen;
 import com.oaklea.urg.view.UI.SongGroupItem;
 import com.oaklea.urg.view.UI.SongItem;
 import com.oaklea.urg.view.UI.SongPreviewPlayer;
+import com.oaklea.urg.view.scenes.CalibrationScreen;
 import com.oaklea.urg.view.scenes.MainMenu;
 import com.oaklea.urg.view.scenes.ResultsScreen;
 import com.oaklea.urg.view.scenes.SettingsScreen;
@@ -24,6 +29,7 @@ import com.oaklea.urg.view.scenes.SongPlayer;
 
 import org.kordamp.ikonli.javafx.FontIcon;
 
+import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.scene.Scene;
@@ -50,11 +56,17 @@ public class Controller {
     SongPlayer songPlayer;
     ResultsScreen resultsScreen;
     SettingsScreen settingsScreen;
+    CalibrationScreen calibrationScreen;
     GlobalSettings gsettings;
     ArrayList<SongGroup> songGroups;
     GameLogic gameLogic;
     MediaPlayer musicPlayer;
     Song currentSong;
+    // practice runs of a song pick up from the checkpoint the last one left
+    Song practiceSong;
+    double practiceStart;
+    double playbackRate = 1.0;
+    LibraryWatcher libraryWatcher;
 
     /**
      * Creates a new Controller that's tied to a Stage. Reads in the songData and
@@ -69,11 +81,11 @@ public class Controller {
 
         // init settings
         readInSettings();
-        // init song data
-        readInSongs();
         // initial screen is the main menu
         setupMainMenu();
         this.mainStage.setScene(this.mainMenu);
+        // init song data, song groups show up as they're read in
+        readInSongs();
 
         // we're done with setting everything up, show it all!
         this.mainStage.setWidth(1920);
@@ -84,13 +96,12 @@ public class Controller {
 
     private void readInSettings() {
         File settingsFile = new File("./bin/settings.gs");
+        // convert files saved by older versions before anything reads them
+        LegacyMigrator.migrate(settingsFile, new File("./bin/songs"));
+        this.gsettings = new GlobalSettings();
         try {
             if (settingsFile.length() != 0) { // check if file empty first
-                FileInputStream fis = new FileInputStream(settingsFile);
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                this.gsettings = (GlobalSettings) ois.readObject();
-                ois.close();
-                fis.close();
+                this.gsettings = GlobalSettings.load(settingsFile);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -101,6 +112,8 @@ public class Controller {
         // add functionality to buttons
         this.mainMenu = new MainMenu(new StackPane());
         this.mainMenu.getSinglePlayerButton().setOnMouseClicked(e -> {
+            if (this.currentSong == null) // no songs read in yet
+                return;
             setupSongPicker();
             this.mainMenu.getVisualizer().pause();
             this.setScene(this.songPicker);
@@ -115,7 +128,9 @@ public class Controller {
         });
 
         // start the main menu visualizer
-        this.mainMenu.getVisualizer().start(this.musicPlayer);
+        if (this.musicPlayer != null) {
+            this.mainMenu.getVisualizer().start(this.musicPlayer);
+        }
     }
 
     private void setupSettingsScreen() {
@@ -137,6 +152,10 @@ public class Controller {
                 gsettings.setHitsoundVolume(newValue.doubleValue() / 100);
             }
         });
+        this.settingsScreen.getCalibrateButton().setOnMouseClicked(e -> {
+            setupCalibrationScreen();
+            this.setScene(this.calibrationScreen);
+        });
         this.settingsScreen.setOnKeyPressed(e -> {
             switch (e.getCode()) {
                 case ESCAPE:
@@ -149,32 +168,56 @@ public class Controller {
         });
     }
 
+    private void setupCalibrationScreen() {
+        this.calibrationScreen = new CalibrationScreen(new BorderPane(), this.gsettings);
+        // the metronome has to be the only thing playing
+        if (this.musicPlayer != null) {
+            this.musicPlayer.pause();
+        }
+        this.calibrationScreen.start();
+        this.calibrationScreen.getBackButton().setOnMouseClicked(e -> {
+            closeCalibrationScreen();
+        });
+        this.calibrationScreen.getApplyButton().setOnMouseClicked(e -> {
+            this.gsettings.setAudioOffset(this.calibrationScreen.getOffset());
+            this.gsettings.save("./bin/settings.gs");
+            closeCalibrationScreen();
+        });
+        this.calibrationScreen.setOnKeyPressed(e -> {
+            switch (e.getCode()) {
+                case ESCAPE:
+                    closeCalibrationScreen();
+                    break;
+                default:
+                    break;
+            }
+        });
+    }
+
+    private void closeCalibrationScreen() {
+        this.calibrationScreen.stop();
+        if (this.musicPlayer != null) {
+            this.musicPlayer.play();
+        }
+        // rebuilt so it shows the new offset
+        setupSettingsScreen();
+        this.setScene(this.settingsScreen);
+    }
+
     private void setupSongPicker() {
         this.songPicker = new SongPicker(this.songGroups, new BorderPane());
         this.songPicker.setBackgroundImage(this.currentSong.getBackgroundPath());
-        ArrayList<SongGroupItem> songGroupItems = this.songPicker.getSongGroupItems();
-        for (SongGroupItem group : songGroupItems) {
-            group.getMainPane().setOnMouseClicked(e -> {
-                for (SongGroupItem g2 : songGroupItems) {
-                    g2.close();
-                }
-                group.toggleSongItems();
-                this.currentSong = group.getSongItems().get(0).getSong();
-                this.songPicker.setBackgroundImage(this.currentSong.getBackgroundPath());
-                this.songPicker.renderScores(this.currentSong);
-                this.playPreview();
-            });
+        for (SongGroupItem group : this.songPicker.getSongGroupItems()) {
+            bindSongGroupItem(group);
             if (group.getSongItems().get(0).getSong().getTitle().equals(this.currentSong.getTitle())) {
                 group.toggleSongItems();
             }
-            for (SongItem song : group.getSongItems()) {
-                song.setOnMouseClicked(e -> {
-                    setupSongPlayer(song.getSong(), e.getButton() == MouseButton.SECONDARY);
-                    setScene(songPlayer);
-                });
-            }
         }
         this.songPicker.renderScores(this.currentSong);
+        this.songPicker.setRate(this.playbackRate);
+        // clicking a score watches its replay, shift click checks it at full speed
+        this.songPicker.setOnScoreClicked((score, e) -> playReplay(this.songPicker.getScoresSong(), score,
+                e.isShiftDown()));
 
         this.songPicker.getBackButton().setOnMouseClicked(e -> {
             this.mainMenu.getVisualizer().unpause();
@@ -188,34 +231,106 @@ public class Controller {
                     this.mainMenu.getVisualizer().unpause();
                     setScene(this.mainMenu);
                     break;
+                case MINUS:
+                    setPlaybackRate(this.playbackRate - 0.1);
+                    break;
+                case EQUALS:
+                case PLUS:
+                    setPlaybackRate(this.playbackRate + 0.1);
+                    break;
                 default:
                     break;
             }
         });
     }
 
-    private void setupGamePortion(Song song, boolean autoplay) {
+    private void setPlaybackRate(double rate) {
+        // keep to one decimal between 0.5x and 2.0x
+        this.playbackRate = Math.max(0.5, Math.min(2.0, Math.round(rate * 10) / 10.0));
+        this.songPicker.setRate(this.playbackRate);
+    }
+
+    private void bindSongGroupItem(SongGroupItem group) {
+        group.getMainPane().setOnMouseClicked(e -> {
+            for (SongGroupItem g2 : this.songPicker.getSongGroupItems()) {
+                g2.close();
+            }
+            group.toggleSongItems();
+            this.currentSong = group.getSongItems().get(0).getSong();
+            this.songPicker.setBackgroundImage(this.currentSong.getBackgroundPath());
+            this.songPicker.renderScores(this.currentSong);
+            this.playPreview();
+        });
+        for (SongItem song : group.getSongItems()) {
+            song.setOnMouseClicked(e -> {
+                // right click autoplays, shift click practices
+                setupSongPlayer(song.getSong(), e.getButton() == MouseButton.SECONDARY, e.isShiftDown());
+                setScene(songPlayer);
+            });
+        }
+    }
+
+    private void playReplay(Song song, GameMetrics score, boolean verify) {
+        File replayFile = song.getReplayFile(score);
+        if (!replayFile.exists()) {
+            return;
+        }
+        Replay replay;
+        try {
+            replay = Replay.load(replayFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        if (verify) {
+            song.readInNotes();
+            GameMetrics result = replay.simulate(song.getNotes(), song.getDifficulty(), song.getNoteCount());
+            song.getNotes().close();
+            setupResultsScreen(result, song);
+            this.resultsScreen.showReplayCheck(result.hasSameResult(score));
+            setScene(this.resultsScreen);
+        } else {
+            setupSongPlayer(song, false, false, replay);
+            setScene(this.songPlayer);
+        }
+    }
+
+    private void setupGamePortion(Song song, boolean autoplay, boolean practice, Replay playback) {
         this.musicPlayer.stop();
         this.musicPlayer = null;
         this.musicPlayer = new MediaPlayer(new Media(new File(song.getAudioPath()).toURI().toString()));
         this.musicPlayer.setVolume(this.gsettings.getMusicVolume());
-        this.gameLogic = new GameLogic(new SongConductor(this.musicPlayer), song, autoplay, this.gsettings) {
+        double rate = this.playbackRate;
+        this.gameLogic = new GameLogic(new SongConductor(this.musicPlayer, rate), song, autoplay, this.gsettings) {
             @Override
             public void onSongEnd() {
-                // save metrics
-                this.getMetrics().save(song.getScorePath());
-                song.addScore(this.getMetrics());
+                // save metrics, practice runs, rate changes and replays don't count
+                if (practice) {
+                    keepCheckpoint(song);
+                } else if (rate == 1.0 && playback == null) {
+                    song.addScore(this.getMetrics(), autoplay ? null : this.getRecording());
+                }
                 setupResultsScreen(this.getMetrics(), song);
                 setScene(resultsScreen);
             }
         };
+        if (playback != null) {
+            this.gameLogic.setPlayback(playback);
+        }
     }
 
-    private void setupSongPlayer(Song song, boolean autoplay) {
+    private void setupSongPlayer(Song song, boolean autoplay, boolean practice) {
+        setupSongPlayer(song, autoplay, practice, null);
+    }
 
-        setupGamePortion(song, autoplay);
+    private void setupSongPlayer(Song song, boolean autoplay, boolean practice, Replay playback) {
 
-        this.songPlayer = new SongPlayer(song, new StackPane(), autoplay, this.gameLogic, this.gsettings);
+        setupGamePortion(song, autoplay, practice, playback);
+
+        // a replay plays itself, so the keyboard is ignored like in autoplay
+        double start = practice && song == this.practiceSong ? this.practiceStart : 0;
+        this.songPlayer = new SongPlayer(song, new StackPane(), autoplay || playback != null, practice, start,
+                this.gameLogic, this.gsettings);
 
         // set up pause buttons
         PauseScreen pauseScreen = this.songPlayer.getPauseScreen();
@@ -223,11 +338,20 @@ public class Controller {
             this.songPlayer.togglePauseScreen();
         });
         pauseScreen.getExitText().setOnMouseClicked(e -> {
+            if (practice) {
+                keepCheckpoint(song);
+            }
+            this.gameLogic.stopGame();
             this.setScene(this.songPicker);
             this.musicPlayer.play();
         });
     }
 
+    private void keepCheckpoint(Song song) {
+        this.practiceSong = song;
+        this.practiceStart = this.songPlayer.getCheckpoint();
+    }
+
     private void setupResultsScreen(GameMetrics metrics, Song song) {
         this.resultsScreen = new ResultsScreen(new BorderPane(), metrics, song);
         this.resultsScreen.setOnKeyPressed(e -> {
@@ -250,23 +374,83 @@ public class Controller {
     }
 
     private void readInSongs() {
-        File songDirectory = new File("./bin/songs");
         this.songGroups = new ArrayList<SongGroup>();
-        for (File directory : songDirectory.listFiles()) {
-            SongGroup group = new SongGroup(directory.getName());
-            if (directory.listFiles() == null)
-                continue;
-            for (File file : directory.listFiles()) {
-                if (file.getName().contains(".txt")) {
-                    group.addSong(new Song(file));
-                }
+        // song metadata comes from the index unless the song file changed
+        LibraryIndex index = new LibraryIndex(new File("./bin/library.idx"));
+        File songDirectory = new File("./bin/songs");
+        LibraryScanner scanner = new LibraryScanner(songDirectory, index) {
+            @Override
+            public void onGroupScanned(SongGroup group) {
+                Platform.runLater(() -> putSongGroup(group));
             }
+
+            @Override
+            public void onScanFinished() {
+            }
+        };
+        // watch before scanning so nothing added during the scan is missed
+        this.libraryWatcher = new LibraryWatcher(songDirectory, scanner, index) {
+            @Override
+            public void onGroupUpdated(SongGroup group) {
+                Platform.runLater(() -> putSongGroup(group));
+            }
+
+            @Override
+            public void onGroupRemoved(String title) {
+                Platform.runLater(() -> removeSongGroup(title));
+            }
+        };
+        this.libraryWatcher.start();
+        scanner.start();
+    }
+
+    private void putSongGroup(SongGroup group) {
+        // replace the group if it's already there, add it otherwise
+        boolean replaced = false;
+        for (int i = 0; i < this.songGroups.size(); i++) {
+            if (this.songGroups.get(i).getTitle().equals(group.getTitle())) {
+                this.songGroups.set(i, group);
+                replaced = true;
+                break;
+            }
+        }
+        if (!replaced) {
             this.songGroups.add(group);
         }
-        // set current song to random song
-        this.currentSong = this.songGroups.get(new Random().nextInt(this.songGroups.size())).getSongs().get(0);
-        playPreview();
+        if (this.songPicker != null) {
+            bindSongGroupItem(this.songPicker.putSongGroup(group));
+        }
+        if (this.currentSong == null) {
+            // start previewing the first song that's ready
+            this.currentSong = group.getSongs().get(0);
+            playPreview();
+        }
+    }
 
+    private void removeSongGroup(String title) {
+        boolean lostCurrent = false;
+        for (int i = this.songGroups.size() - 1; i >= 0; i--) {
+            SongGroup group = this.songGroups.get(i);
+            if (group.getTitle().equals(title)) {
+                lostCurrent |= group.getSongs().contains(this.currentSong);
+                this.songGroups.remove(i);
+            }
+        }
+        if (this.songPicker != null) {
+            this.songPicker.removeSongGroup(title);
+        }
+        if (lostCurrent) {
+            // the current song's files are gone, so move on to another song
+            this.currentSong = this.songGroups.isEmpty() ? null : this.songGroups.get(0).getSongs().get(0);
+            // a song being played keeps its own player until it ends
+            if (this.mainStage.getScene() != this.songPlayer) {
+                if (this.currentSong != null) {
+                    playPreview();
+                } else if (this.musicPlayer != null) {
+                    this.musicPlayer.stop();
+                }
+            }
+        }
     }
 
     private void playPreview() {
@@ -298,7 +482,7 @@ public class Controller {
                 });
                 FontIcon shuffleButton = mainMenu.getPreviewPlayer().getShuffleButton();
                 shuffleButton.setOnMouseClicked(e -> {
-                    if (musicPlayer != null) {
+                    if (musicPlayer != null && !songGroups.isEmpty()) {
                         // set current song to random song
                         currentSong = songGroups.get(new Random().nextInt(songGroups.size())).getSongs().get(0);
                         playPreview();
@@ -0,0 +1,246 @@
+package com.oaklea.urg.model;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+/**
+ * Reads and writes the compiled binary form of a song file. A compiled chart
+ * (.urgc) sits next to its text chart and stores every note as a fixed-width
+ * record, grouped by lane and sorted by start time, so it can be loaded
+ * through a memory map without any text parsing. The compiled file remembers
+ * the modification time and length of the text chart it was built from and is
+ * rebuilt whenever those change.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class CompiledChart {
+
+    public static final String EXTENSION = ".urgc";
+    static final int MAGIC = 0x55524743; // "URGC"
+    static final short VERSION = 2;
+    static final int LANES = 4;
+    // magic, version, lane count, source mtime, source length, lane counts
+    static final int HEADER_SIZE = 4 + 2 + 2 + 8 + 8 + (LANES * 4);
+    // id, value, start time, end time, flags
+    static final int RECORD_SIZE = 5 * 4;
+    static final int FLAG_FADER = 1;
+
+    /**
+     * Gets the compiled chart file that belongs to a song file
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the text song file
+     * @return the compiled chart file
+     */
+    public static File compiledFileFor(File songFile) {
+        String name = songFile.getName();
+        int dot = name.lastIndexOf(".");
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return new File(songFile.getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Returns whether or not a compiled chart needs to be rebuilt from its song
+     * file
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the text song file
+     * @param compiled the compiled chart file
+     * @return true if the compiled chart is missing or out of date
+     */
+    public static boolean isStale(File songFile, File compiled) {
+        if (!compiled.isFile() || compiled.length() < HEADER_SIZE) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getShort() != VERSION
+                    || header.getShort() != LANES) {
+                return true;
+            }
+            return header.getLong() != songFile.lastModified() || header.getLong() != songFile.length();
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Loads the notes of a song file, compiling it first if the compiled chart
+     * is missing or out of date. Falls back to parsing the text file directly
+     * if the compiled chart can't be written.
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the text song file
+     * @return the notes of the song
+     */
+    public static NoteTable load(File songFile) {
+        try {
+            return read(ensureCompiled(songFile));
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                return NoteTable.of(parse(songFile));
+            } catch (IOException e2) {
+                e2.printStackTrace();
+            }
+        }
+        return new NoteTable(new int[LANES]);
+    }
+
+    /**
+     * Gets the compiled chart of a song file, compiling it first if it's missing
+     * or out of date
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the text song file
+     * @return the up to date compiled chart file
+     * @throws IOException if the chart can't be compiled
+     */
+    public static File ensureCompiled(File songFile) throws IOException {
+        File compiled = compiledFileFor(songFile);
+        if (isStale(songFile, compiled)) {
+            compile(songFile, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * Compiles a text song file into a binary chart
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the text song file
+     * @param compiled the compiled chart file to write
+     * @throws IOException if the song file can't be read or the chart can't be
+     *                     written
+     */
+    public static void compile(File songFile, File compiled) throws IOException {
+        long modified = songFile.lastModified();
+        long length = songFile.length();
+        ArrayList<ArrayList<SongNote>> notes = parse(songFile);
+
+        int total = 0;
+        for (ArrayList<SongNote> lane : notes) {
+            total += lane.size();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + total * RECORD_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) LANES);
+        buffer.putLong(modified);
+        buffer.putLong(length);
+        for (ArrayList<SongNote> lane : notes) {
+            buffer.putInt(lane.size());
+        }
+        for (ArrayList<SongNote> lane : notes) {
+            for (SongNote note : lane) {
+                buffer.putInt(note.id);
+                buffer.putInt((int) note.getPointValue());
+                buffer.putInt((int) note.getStartTime());
+                buffer.putInt((int) note.getEndTime());
+                buffer.putInt(note.isFader() ? FLAG_FADER : 0);
+            }
+        }
+        buffer.flip();
+
+        // write next to the target and swap it in so a reader never sees half a
+        // chart
+        File temp = new File(compiled.getParentFile(), compiled.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temp.toPath(), compiled.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static NoteTable read(File compiled) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION || buffer.getShort() != LANES) {
+            throw new IOException("Not a compiled chart: " + compiled.getPath());
+        }
+        buffer.getLong(); // source mtime
+        buffer.getLong(); // source length
+        int[] counts = new int[LANES];
+        int total = 0;
+        for (int i = 0; i < LANES; i++) {
+            counts[i] = buffer.getInt();
+            total += counts[i];
+        }
+        if (buffer.remaining() < total * RECORD_SIZE) {
+            throw new IOException("Truncated compiled chart: " + compiled.getPath());
+        }
+
+        NoteTable table = new NoteTable(counts);
+        for (int lane = 0; lane < LANES; lane++) {
+            for (int i = 0; i < counts[lane]; i++) {
+                int id = buffer.getInt();
+                int value = buffer.getInt();
+                int start = buffer.getInt();
+                int end = buffer.getInt();
+                int flags = buffer.getInt();
+                table.set(lane, i, id, value, start, end, (flags & FLAG_FADER) != 0);
+            }
+        }
+        return table;
+    }
+
+    private static ArrayList<ArrayList<SongNote>> parse(File songFile) throws IOException {
+        ArrayList<ArrayList<SongNote>> notes = new ArrayList<ArrayList<SongNote>>();
+        for (int i = 0; i < LANES; i++) {
+            notes.add(new ArrayList<SongNote>());
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(songFile))) {
+            int count = 1;
+            String line = reader.readLine();
+            while (line != null) {
+                if (count > 4) {
+                    String[] split = line.split(" ");
+                    if (split.length >= 4) {
+                        int direction = Integer.parseInt(split[0]);
+                        SongNote note = new SongNote((count - 4), direction, Integer.parseInt(split[1]),
+                                Integer.parseInt(split[2]), Integer.parseInt(split[3]), split.length == 5);
+                        notes.get(direction).add(note);
+                    }
+                }
+                count++;
+                line = reader.readLine();
+            }
+        }
+        // charts are usually in order already, but the note cursors rely on it
+        for (ArrayList<SongNote> lane : notes) {
+            lane.sort(new Comparator<SongNote>() {
+                @Override
+                public int compare(SongNote o1, SongNote o2) {
+                    return Double.compare(o1.getStartTime(), o2.getStartTime());
+                }
+            });
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,69 @@
+package com.oaklea.urg.model;
+
+/**
+ * A SongClock that moves forward by the same amount every update instead of
+ * following the system clock, for running through a chart as fast as
+ * possible without any audio
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class FixedStepClock implements SongClock {
+
+    final double step;
+    final double length;
+    double position;
+
+    /**
+     * Creates a new FixedStepClock at the start of a song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param step   how far each update moves the clock in seconds
+     * @param length the length of the song in seconds
+     */
+    public FixedStepClock(double step, double length) {
+        this.step = step;
+        this.length = length;
+    }
+
+    /**
+     * Creates a new FixedStepClock at the start of a chart, stepping 1 ms at a
+     * time and ending once every note can no longer be hit
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param notes the notes of the chart
+     * @return the clock
+     */
+    public static FixedStepClock forChart(NoteSource notes) {
+        return new FixedStepClock(0.001, (notes.getLastEndTime() + NoteJudge.OK_WINDOW) / 1000 + 0.001);
+    }
+
+    /**
+     * Moves the clock forward by one step
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return 0 if the song hasn't ended, 1 otherwise
+     */
+    @Override
+    public int update() {
+        this.position += this.step;
+        return this.position >= this.length ? 1 : 0;
+    }
+
+    /**
+     * Gets the position of the clock. The clock doesn't follow real time, so
+     * every instant is the same
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param nanoTime ignored
+     * @return the position in seconds
+     */
+    @Override
+    public double getPosition(long nanoTime) {
+        return this.position;
+    }
+}
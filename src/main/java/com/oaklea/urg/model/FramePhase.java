@@ -0,0 +1,12 @@
+package com.oaklea.urg.model;
+
+/**
+ * An enumeration to represent the parts of a frame and of a step of the game
+ * that are timed by a FrameProfiler
+ * 
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public enum FramePhase {
+    FRAME, PREPARE, RENDER, STEP, INPUT, JUDGE, CONDUCTOR, PUBLISH
+}
@@ -0,0 +1,145 @@
+package com.oaklea.urg.model;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Times each FramePhase of a song into its own TimingHistogram, and keeps
+ * track of the garbage collection done since the song started, so a dropped
+ * frame can be put down to rendering, the song's clock or the garbage
+ * collector. Phases of a frame are recorded by the JavaFX thread and phases of
+ * a step by the game's thread
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class FrameProfiler {
+
+    public static final String DIRECTORY = "./bin/profiles";
+
+    TimingHistogram[] histograms;
+    long startCollections;
+    long startCollectionMillis;
+
+    /**
+     * Creates a new FrameProfiler with nothing recorded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public FrameProfiler() {
+        this.histograms = new TimingHistogram[FramePhase.values().length];
+        for (int i = 0; i < this.histograms.length; i++) {
+            this.histograms[i] = new TimingHistogram();
+        }
+        this.startCollections = totalCollections();
+        this.startCollectionMillis = totalCollectionMillis();
+    }
+
+    /**
+     * Records how long a phase took
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param phase the phase
+     * @param nanos how long it took in ns
+     */
+    public void record(FramePhase phase, long nanos) {
+        this.histograms[phase.ordinal()].record(nanos);
+    }
+
+    /**
+     * Records a phase that started at a given instant and just ended
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param phase the phase
+     * @param start when the phase started, from System.nanoTime
+     * @return now, from System.nanoTime, to start the next phase from
+     */
+    public long lap(FramePhase phase, long start) {
+        long now = System.nanoTime();
+        this.histograms[phase.ordinal()].record(now - start);
+        return now;
+    }
+
+    /**
+     * Gets the durations recorded for a phase
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param phase the phase
+     * @return the histogram of the phase
+     */
+    public TimingHistogram getHistogram(FramePhase phase) {
+        return this.histograms[phase.ordinal()];
+    }
+
+    /**
+     * Gets how many garbage collections have run since the profiler was made
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of collections
+     */
+    public long getCollections() {
+        return totalCollections() - this.startCollections;
+    }
+
+    /**
+     * Gets how long garbage collection has taken since the profiler was made
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the time spent collecting in ms
+     */
+    public long getCollectionMillis() {
+        return totalCollectionMillis() - this.startCollectionMillis;
+    }
+
+    private static long totalCollections() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long totalCollectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Writes the percentiles of every phase and the garbage collection totals
+     * to a CSV file, with every duration in microseconds
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the file to write to
+     * @throws IOException if the file can't be written
+     */
+    public void export(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (PrintWriter out = new PrintWriter(new FileWriter(file))) {
+            out.println("phase,count,p50_us,p90_us,p99_us,p99.9_us,max_us,mean_us");
+            for (FramePhase phase : FramePhase.values()) {
+                TimingHistogram histogram = this.getHistogram(phase);
+                out.printf("%s,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f%n", phase.name().toLowerCase(),
+                        histogram.getCount(), histogram.getPercentile(50) / 1000.0,
+                        histogram.getPercentile(90) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                        histogram.getPercentile(99.9) / 1000.0, histogram.getMax() / 1000.0,
+                        histogram.getMean() / 1000.0);
+            }
+            out.println("gc_collections," + this.getCollections());
+            out.println("gc_ms," + this.getCollectionMillis());
+        }
+    }
+}
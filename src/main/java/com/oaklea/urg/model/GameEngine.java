@@ -0,0 +1,293 @@
+package com.oaklea.urg.model;
+
+/**
+ * The game itself, without anything to see or hear. Steps a song's notes
+ * through a NoteJudge by a SongClock, takes presses, records them into a
+ * Replay or plays one back, and keeps the GameMetrics. Nothing here touches
+ * JavaFX, so with a FixedStepClock a whole chart runs as fast as the judge
+ * can go, with no display
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class GameEngine {
+
+    NoteSource notes;
+    String difficulty;
+    int noteCount;
+    boolean autoplay;
+    SongClock clock;
+    NoteSink sink;
+    NoteJudge judge;
+    GameMetrics metrics;
+    Replay recording;
+    Replay playback;
+    int playbackIndex;
+    long lastMicros;
+    boolean[] lit;
+    int hitsounds;
+    // the changes made by judges from before the last reset
+    int previousChanges;
+    FrameProfiler profiler;
+
+    /**
+     * Creates a new GameEngine at the start of a song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param notes      the notes of the song, rewound to the start
+     * @param difficulty the difficulty of the song
+     * @param noteCount  the amount of notes in the song
+     * @param autoplay   whether or not to autoplay the song
+     * @param clock      the clock to follow the song by
+     * @param sink       told about notes as they start and are judged
+     */
+    public GameEngine(NoteSource notes, String difficulty, int noteCount, boolean autoplay, SongClock clock,
+            NoteSink sink) {
+        this.notes = notes;
+        this.difficulty = difficulty;
+        this.noteCount = noteCount;
+        this.autoplay = autoplay;
+        this.clock = clock;
+        this.sink = sink;
+        this.lit = new boolean[NoteTable.LANES];
+        this.reset(Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * Starts judging over from a point in the song, with new metrics. The notes
+     * must already be moved to that point
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMs the point in the song in ms, or negative infinity for the
+     *               very start
+     */
+    public void reset(double timeMs) {
+        this.metrics = new GameMetrics(this.difficulty, this.noteCount);
+        // a replay is only kept of plays from the very start
+        this.recording = timeMs == Double.NEGATIVE_INFINITY ? new Replay(this.noteCount * 2) : null;
+        this.lastMicros = Long.MIN_VALUE;
+        if (this.judge != null) {
+            // the reset is a change too, even if the old judge never changed
+            this.previousChanges += this.judge.getChanges() + 1;
+        }
+        this.judge = new NoteJudge(this.notes, this.metrics, this.autoplay, this.sink);
+        this.judge.advance(timeMs);
+    }
+
+    /**
+     * Moves the game forward to the clock's current point in the song,
+     * spawning, hitting and missing notes along the way
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return whether or not the song has ended. Once it has, every note is
+     *         judged
+     */
+    public boolean step() {
+        long start = System.nanoTime();
+        long now = this.songMicros(start);
+        if (this.playback != null) {
+            this.playBack(now);
+        }
+        // spawn notes that have started and miss notes that can't be hit
+        if (this.autoplay) {
+            if (this.judge.autoHit(now / 1000.0)) {
+                this.hitsounds++;
+            }
+        } else {
+            this.judge.advance(now / 1000.0);
+        }
+        if (this.profiler != null) {
+            start = this.profiler.lap(FramePhase.JUDGE, start);
+        }
+
+        // update song playhead
+        boolean ended = this.clock.update() == 1;
+        if (this.profiler != null) {
+            this.profiler.lap(FramePhase.CONDUCTOR, start);
+        }
+        if (ended) {
+            // notes nobody got to before the song ended are misses
+            this.judge.finish();
+        }
+        return ended;
+    }
+
+    /**
+     * Steps until the song ends, as fast as the clock allows
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the metrics of the play
+     */
+    public GameMetrics play() {
+        while (!this.step()) {
+        }
+        return this.metrics;
+    }
+
+    /**
+     * Presses a lane at a given instant, judging it at the point the song was
+     * at at that instant
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane     the lane
+     * @param nanoTime when the lane was pressed, from System.nanoTime
+     * @return the note that was hit, or null if the press didn't hit anything
+     */
+    public SongNote press(int lane, long nanoTime) {
+        long now = this.songMicros(nanoTime);
+        if (this.recording != null) {
+            this.recording.record(now, lane, true);
+        }
+        this.lit[lane] = true;
+        return this.judge.press(lane, now / 1000.0);
+    }
+
+    /**
+     * Releases a lane at a given instant
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane     the lane
+     * @param nanoTime when the lane was released, from System.nanoTime
+     */
+    public void release(int lane, long nanoTime) {
+        if (this.recording != null) {
+            this.recording.record(this.songMicros(nanoTime), lane, false);
+        }
+        this.lit[lane] = false;
+    }
+
+    private long songMicros(long nanoTime) {
+        // whole microseconds, and never earlier than the last reading, so replays
+        // see exactly the same times the judge did
+        long micros = Math.round(this.clock.getPosition(nanoTime) * 1_000_000);
+        this.lastMicros = Math.max(micros, this.lastMicros);
+        return this.lastMicros;
+    }
+
+    private void playBack(long now) {
+        while (this.playbackIndex < this.playback.size() && this.playback.getTime(this.playbackIndex) <= now) {
+            int lane = this.playback.getLane(this.playbackIndex);
+            if (this.playback.isPress(this.playbackIndex)) {
+                this.hitsounds++;
+                this.judge.press(lane, this.playback.getTime(this.playbackIndex) / 1000.0);
+            }
+            this.lit[lane] = this.playback.isPress(this.playbackIndex);
+            this.playbackIndex++;
+        }
+    }
+
+    /**
+     * Plays a replay back instead of taking presses. Must be set before the
+     * first step
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param replay the replay to play back
+     */
+    public void setPlayback(Replay replay) {
+        this.playback = replay;
+        this.playbackIndex = 0;
+    }
+
+    /**
+     * Sets a profiler to time the judging and clock updates of each step with
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param profiler the profiler, or null to not time anything
+     */
+    public void setProfiler(FrameProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    /**
+     * Gets the replay of every press and release since the start of the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the replay, or null if the game was reset partway through
+     */
+    public Replay getRecording() {
+        return this.recording;
+    }
+
+    /**
+     * Gets the metrics of the play so far
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the metrics
+     */
+    public GameMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Gets the amount of notes in a lane that have started but haven't been
+     * judged yet
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the amount of notes
+     */
+    public int getPendingCount(int lane) {
+        return this.judge.getPendingCount(lane);
+    }
+
+    /**
+     * Copies the notes in a lane that have started but haven't been judged yet
+     * into an array
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @param into the array, with room for at least getPendingCount notes
+     * @return the amount of notes copied, soonest to end first
+     */
+    public int getPending(int lane, SongNote[] into) {
+        return this.judge.getPending(lane, into);
+    }
+
+    /**
+     * Gets how many times a note has started or been judged, or the game has
+     * been reset, so callers can tell when the pending notes have changed
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of changes
+     */
+    public int getChanges() {
+        return this.previousChanges + this.judge.getChanges();
+    }
+
+    /**
+     * Returns whether a lane is held down
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return if the lane is held down
+     */
+    public boolean isLit(int lane) {
+        return this.lit[lane];
+    }
+
+    /**
+     * Gets how many hitsounds should have played for hits the player didn't
+     * make themselves, from autoplay or a replay
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of hitsounds
+     */
+    public int getHitsounds() {
+        return this.hitsounds;
+    }
+}
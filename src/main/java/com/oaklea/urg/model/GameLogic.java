@@ -1,15 +1,14 @@
 package com.oaklea.urg.model;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.io.IOException;
 import com.oaklea.urg.view.visuals.GameRenderer;
-import com.oaklea.urg.view.visuals.NoteEntity;
 
+import javafx.application.Platform;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.image.Image;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
+import javafx.scene.media.AudioClip;
 
 /**
  * The main facilitator of everything that interacts with the game. Checks the
@@ -22,6 +21,8 @@ public abstract class GameLogic {
 
     Song song;
     GameLoop loop;
+    SimulationLoop simulation;
+    SnapshotBuffer snapshots;
     Canvas canvas;
     AnchorPane anchor;
     SongConductor conductor;
@@ -29,12 +30,21 @@ public abstract class GameLogic {
     SongNote notesOnScreen;
     Boolean autoplay;
     GlobalSettings settings;
-    MediaPlayer hitsoundPlayer;
-    GameMetrics metrics;
-    float initialOffset;
+    AudioClip hitsound;
+    GameEngine engine;
+    InputRing input;
+    FrameProfiler profiler;
+    long lastStep;
+    boolean showProfile;
+    volatile boolean profiled;
+    // which lanes the player is holding, so key repeats aren't extra presses
+    boolean[] held;
+    Replay playback;
+    int hitsoundsPlayed;
+    boolean stopped;
+    // how late the music is heard after it's played, in ms
+    double initialOffset;
     String hitsoundPath = new File("./bin/misc/drum-hitnormal.wav").toURI().toString();
-    final int noteWidth = 50;
-    final int noteHeight = 50;
 
     /**
      * Creates a new GameLogic object with every class it needs to interact with
@@ -51,10 +61,11 @@ public abstract class GameLogic {
         this.conductor = conductor;
         this.autoplay = autoplay;
         this.settings = settings;
-        this.initialOffset = 0f;
-        this.metrics = new GameMetrics(this.song.getDifficulty());
-        this.hitsoundPlayer = new MediaPlayer(new Media(new File("./bin/misc/drum-hitnormal.wav").toURI().toString()));
-        this.hitsoundPlayer.setVolume(settings.getMusicVolume());
+        this.initialOffset = settings.getAudioOffset();
+        this.hitsound = new AudioClip(this.hitsoundPath);
+        this.input = new InputRing(1024);
+        this.held = new boolean[NoteTable.LANES];
+        this.snapshots = new SnapshotBuffer();
     }
 
     /**
@@ -87,70 +98,209 @@ public abstract class GameLogic {
      * @version 1.0.0
      */
     public void startGame() {
-        this.conductor.start();
-        this.loop = new GameLoop() {
-            @Override
-            public void tick(float secondsSinceLastFrame) {
-                renderer.prepare();
+        this.startGame(0);
+    }
 
-                // handle note creation
-                ArrayList<ArrayList<SongNote>> notes = song.getNotes();
-                // check each lane to see if notes need to be spawned
-                for (int i = 0; i < 4; i++) {
-                    ArrayList<SongNote> lane = notes.get(i);
-                    if (lane.size() > 0) {
-                        SongNote next = lane.get(0);
-                        if ((conductor.getPosition() * 1000) >= next.getStartTime()) {
-                            NoteEntity newNote = new NoteEntity(noteWidth, noteHeight, next);
-                            newNote.setPosition(anchor.getWidth() / 2 - (570 / 2) + 125 + (next.getLane() * 90), -50);
-                            renderer.addNote(newNote, next.getLane());
-                            lane.remove(0);
-                        }
-                    }
+    /**
+     * Starts the game loop from a point in the song. Notes are spawned and
+     * judged on their own thread at a fixed rate, which hands a snapshot of the
+     * game to the JavaFX thread to draw every step, so dropped frames never
+     * change how notes are judged
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param startMs the point in the song to start from in ms
+     */
+    public void startGame(double startMs) {
+        this.simulation = new SimulationLoop() {
+            @Override
+            public void step() {
+                long start = System.nanoTime();
+                if (lastStep != 0) {
+                    profiler.record(FramePhase.STEP, start - lastStep);
                 }
-
-                // check if notes need to be hit for autoplay
-                // also check if a note has been missed
-                ArrayList<ArrayList<NoteEntity>> notesOnScreen = renderer.getEntities();
-                boolean hitAny = false;
-                for (int i = 0; i < 4; i++) {
-                    ArrayList<NoteEntity> lane = notesOnScreen.get(i);
-                    if (lane.size() > 0) {
-                        NoteEntity next = lane.get(0);
-                        if (autoplay) {
-                            if (next.getNoteData().getEndTime() <= conductor.getPosition() * 1000) {
-                                if (hitNote(i)) {
-                                    hitAny = true;
-                                }
-                            }
-                        }
-                        if (next.getPosition().getY() >= canvas.getHeight()) {
-                            // they missed a note
-                            renderer.removeNoteAt(0, i);
-                            metrics.miss();
-                            metrics.passedNote();
-                        }
+                lastStep = start;
+                input.drain(engine);
+                profiler.lap(FramePhase.INPUT, start);
+                if (engine.step()) {
+                    // stop stepping
+                    this.stop();
+                    song.getNotes().close();
+                    publish();
+                    if (profiled) {
+                        exportProfile();
                     }
+                    // go to results screen
+                    Platform.runLater(() -> {
+                        if (!stopped) {
+                            loop.stop();
+                            onSongEnd();
+                        }
+                    });
+                    return;
                 }
-                if (hitAny) {
+                start = System.nanoTime();
+                publish();
+                profiler.lap(FramePhase.PUBLISH, start);
+            }
+        };
+        this.loop = new GameLoop() {
+            @Override
+            public void tick(float secondsSinceLastFrame) {
+                // gaps of over a second are pauses, not slow frames
+                if (secondsSinceLastFrame < 1) {
+                    profiler.record(FramePhase.FRAME, (long) (secondsSinceLastFrame * 1e9));
+                }
+                GameSnapshot current = snapshots.latest();
+                if (current.getHitsounds() != hitsoundsPlayed) {
+                    hitsoundsPlayed = current.getHitsounds();
                     playHitsound();
                 }
-
-                // update song playhead
-                if (conductor.update() == 1) {
-                    // stop game loop
-                    this.stop();
-                    // go to results screen
-                    onSongEnd();
+                // render the latest game state
+                long start = System.nanoTime();
+                renderer.prepare(current);
+                start = profiler.lap(FramePhase.PREPARE, start);
+                renderer.render(current, secondsSinceLastFrame);
+                profiler.lap(FramePhase.RENDER, start);
+                if (showProfile) {
+                    renderer.renderProfile(profiler);
                 }
-
-                // render new game state
-                renderer.render(conductor.getPosition(), conductor.songLength(), metrics, secondsSinceLastFrame);
             }
         };
+        // the offset shifts the whole clock, so every note is judged and drawn
+        // against when the music is heard
+        this.conductor.setOffset(this.initialOffset);
+        this.conductor.start();
+        // the renderer draws whatever notes are pending, so the engine has
+        // nothing to tell about them
+        this.engine = new GameEngine(this.song.getNotes(), this.song.getDifficulty(), this.song.getNoteCount(),
+                this.autoplay, this.conductor, new NoteSink() {
+                });
+        if (this.playback != null) {
+            this.engine.setPlayback(this.playback);
+        }
+        this.profiler = new FrameProfiler();
+        this.engine.setProfiler(this.profiler);
+        if (startMs > 0) {
+            this.seek(startMs);
+        }
+        this.publish();
+        this.simulation.start();
         this.loop.start();
     }
 
+    /**
+     * Jumps to a point in the song. The notes on screen are cleared, the note
+     * cursors are moved to the notes that haven't passed yet and the metrics
+     * start over
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMs the point in the song to jump to in ms
+     */
+    public void seek(double timeMs) {
+        synchronized (this.simulation) {
+            double length = this.conductor.songLength() * 1000;
+            if (length > 0) {
+                // leave room before the end so the song doesn't end immediately
+                timeMs = Math.min(timeMs, length - 1000);
+            }
+            timeMs = Math.max(timeMs, 0);
+            // presses from before the jump are judged before it
+            this.input.drain(this.engine);
+            this.song.getNotes().seek(timeMs);
+            this.conductor.seek(timeMs / 1000);
+            // the jump isn't a slow step
+            this.lastStep = 0;
+            this.engine.reset(timeMs);
+            this.publish();
+        }
+    }
+
+    private void publish() {
+        this.snapshots.publish(this.engine, this.conductor.getPosition(), this.conductor.songLength());
+    }
+
+    /**
+     * Shows or hides the timing of each part of a frame over the game. Once
+     * it's been shown, the timings are exported when the song ends
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void toggleProfile() {
+        this.showProfile = !this.showProfile;
+        this.profiled = true;
+    }
+
+    private void exportProfile() {
+        File file = new File(FrameProfiler.DIRECTORY, "profile-" + System.currentTimeMillis() + ".csv");
+        try {
+            this.profiler.export(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Plays a replay back instead of taking presses from the player. Must be
+     * called before the game starts
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param replay the replay to play back
+     */
+    public void setPlayback(Replay replay) {
+        this.playback = replay;
+    }
+
+    /**
+     * Gets the replay of every press and release since the start of the song
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the replay, or null if the game jumped around the song
+     */
+    public Replay getRecording() {
+        return this.engine.getRecording();
+    }
+
+    /**
+     * Gets the current position in the song, as last drawn. Only to be called
+     * from the JavaFX thread
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the current position in ms
+     */
+    public double getPosition() {
+        return this.snapshots.latest().getPosition() * 1000;
+    }
+
+    /**
+     * Gets the rate the song is played at
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the playback rate
+     */
+    public double getRate() {
+        return this.conductor.getRate();
+    }
+
+    /**
+     * Stops the game loop early, such as when the player exits a song
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void stopGame() {
+        this.stopped = true;
+        this.simulation.stop();
+        this.loop.stop();
+        this.song.getNotes().close();
+    }
+
     /**
      * Toggles the game's state, switching from paused to unpaused and back
      * 
@@ -159,16 +309,26 @@ public abstract class GameLogic {
      */
     public void togglePause() {
         if (this.loop.isPaused()) {
+            // presses made while paused are judged where the song was paused
+            synchronized (this.simulation) {
+                this.input.drain(this.engine);
+            }
             this.conductor.unpause();
+            this.simulation.play();
             this.loop.play();
         } else {
             this.loop.pause();
+            // nothing steps once this returns, so the conductor is safe to touch
+            this.simulation.pause();
+            this.input.drain(this.engine);
             this.conductor.pause();
+            // the pause isn't a slow step, so time the next one afresh
+            this.lastStep = 0;
         }
     }
 
     /**
-     * Presses a lane, playing a hitsound and lighting up a note receptor
+     * Presses a lane now, playing a hitsound and lighting up a note receptor
      * accordingly. Makes the game check for any notes to hit
      * 
      * @author Aidan Oakley
@@ -176,20 +336,65 @@ public abstract class GameLogic {
      * @param lane the lane to light up and check for notes to hit
      */
     public void pressLane(int lane) {
+        this.pressLane(lane, System.nanoTime());
+    }
+
+    /**
+     * Presses a lane at a given instant, playing a hitsound and lighting up a
+     * note receptor accordingly. The press is handed to the game's thread and
+     * judged at the point the song was at at that instant. Pressing a lane
+     * that's already held, as key repeat does, is ignored
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane     the lane to light up and check for notes to hit
+     * @param nanoTime when the lane was pressed, from System.nanoTime
+     */
+    public void pressLane(int lane, long nanoTime) {
+        if (this.held[lane]) {
+            // the key is being held down and repeating
+            return;
+        }
+        this.held[lane] = true;
         playHitsound();
-        hitNote(lane);
-        this.renderer.lightReceptor(lane);
+        this.offerInput(lane, true, nanoTime);
     }
 
     /**
-     * Releases a lane, unlighting the receptor
+     * Releases a lane now, unlighting the receptor
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param lane the lane to
+     * @param lane the lane to release
      */
     public void releaseLane(int lane) {
-        this.renderer.unlightReceptor(lane);
+        this.releaseLane(lane, System.nanoTime());
+    }
+
+    /**
+     * Releases a lane at a given instant, unlighting the receptor
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane     the lane to release
+     * @param nanoTime when the lane was released, from System.nanoTime
+     */
+    public void releaseLane(int lane, long nanoTime) {
+        if (!this.held[lane]) {
+            return;
+        }
+        this.held[lane] = false;
+        this.offerInput(lane, false, nanoTime);
+    }
+
+    private void offerInput(int lane, boolean pressed, long nanoTime) {
+        while (!this.input.offer(lane, pressed, nanoTime)) {
+            // the game is too far behind to take more presses, so judge what's
+            // waiting here instead of dropping any
+            synchronized (this.simulation) {
+                this.input.drain(this.engine);
+            }
+        }
     }
 
     /**
@@ -200,7 +405,7 @@ public abstract class GameLogic {
      * @return the GameMetrics for this game loop
      */
     public GameMetrics getMetrics() {
-        return this.metrics;
+        return this.engine.getMetrics();
     }
 
     /**
@@ -214,61 +419,7 @@ public abstract class GameLogic {
     private void playHitsound() {
         if (settings.getHitsoundVolume() <= 0)
             return;
-        // Thread playerThread = new Thread(new Runnable() {
-        // public void run() {
-        // MediaPlayer player;
-        // player = new MediaPlayer(new Media(hitsoundPath));
-        // player.setVolume(settings.getHitsoundVolume());
-        // player.play();
-        // };
-        // });
-        // playerThread.start();
-        MediaPlayer player;
-        player = new MediaPlayer(new Media(hitsoundPath));
-        player.setVolume(settings.getHitsoundVolume());
-        player.play();
-    }
-
-    private boolean hitNote(int direction) {
-        // check the next four notes and see if any of them would be hit in this
-        // instance
-        double duration = this.conductor.getPosition() * 1000;
-        ArrayList<NoteEntity> lane = this.renderer.getEntities().get(direction);
-        NoteEntity noteHit = null;
-        if (lane.size() > 0) {
-            // find note in lane
-            for (NoteEntity next : lane) {
-                double endTime = next.getNoteData().getEndTime();
-                if ((endTime - 18 <= duration && duration <= endTime + 18) || this.autoplay) {
-                    // perfect
-                    noteHit = next;
-                    this.metrics.hitPerfect(next.getNoteData());
-                    break;
-                } else if (endTime - 43 <= duration && duration <= endTime + 43) {
-                    // great
-                    noteHit = next;
-                    this.metrics.hitGreat(next.getNoteData());
-                    break;
-                } else if (endTime - 76 <= duration && duration <= endTime + 76) {
-                    // good
-                    noteHit = next;
-                    this.metrics.hitGood(next.getNoteData());
-                    break;
-                } else if (endTime - 127 <= duration && duration <= endTime + 127) {
-                    // ok
-                    noteHit = next;
-                    this.metrics.hitOK(next.getNoteData());
-                    break;
-                }
-            }
-        }
-        if (noteHit != null) {
-            renderer.removeNote(noteHit, direction);
-            this.metrics.passedNote();
-            return true;
-        }
-        return false;
-
+        this.hitsound.play(settings.getHitsoundVolume());
     }
 
 }
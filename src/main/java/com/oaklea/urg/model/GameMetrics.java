@@ -1,13 +1,10 @@
 package com.oaklea.urg.model;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 
 /**
  * A class containing all significant metrics of a "play" of a song
@@ -17,6 +14,10 @@ import java.util.ArrayList;
  */
 public class GameMetrics implements Serializable {
 
+    // pinned so scores saved before the binary format can still be migrated
+    private static final long serialVersionUID = -8708328262563159632L;
+    static final int CODEC_VERSION = 3;
+
     double notesPassed;
     double notesHit;
     int combo;
@@ -29,6 +30,9 @@ public class GameMetrics implements Serializable {
     int oks;
     int misses;
     String difficulty;
+    long playedAt;
+    // saved by write, scores migrated from serialization don't have one
+    transient HitTimeline timeline;
 
     /**
      * Creates a new GameMetrics object for a given difficulty
@@ -42,6 +46,20 @@ public class GameMetrics implements Serializable {
         this.difficulty = diff;
     }
 
+    /**
+     * Creates a new GameMetrics object for a given difficulty, with room to
+     * record the timing of every note in a song
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param diff      the difficulty
+     * @param noteCount the amount of notes in the song
+     */
+    public GameMetrics(String diff, int noteCount) {
+        this(diff);
+        this.timeline = new HitTimeline(noteCount);
+    }
+
     /**
      * Modifies the GameMetrics for when a "perfect" is hit
      * 
@@ -130,51 +148,87 @@ public class GameMetrics implements Serializable {
     }
 
     /**
-     * Serializes this GameMetric to a given path
+     * Appends this GameMetric to the score journal at a given path
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param path the path to serialize this object to
+     * @param path the path of the score journal
      */
     public void save(String path) {
-
-        // read in arraylist of scores
-        ArrayList<GameMetrics> scores = new ArrayList<GameMetrics>();
         try {
-            if (new File(path).length() != 0) { // check if file empty first
-                FileInputStream fis = new FileInputStream(path);
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                Object obj = ois.readObject();
-                if (obj instanceof ArrayList<?>) {
-                    ArrayList<?> al = (ArrayList<?>) obj;
-                    for (int i = 0; i < al.size(); i++) {
-                        Object o = al.get(i);
-                        if (o instanceof GameMetrics) {
-                            GameMetrics gm = (GameMetrics) o;
-                            scores.add(gm);
-                        }
-                    }
-                }
-                ois.close();
-                fis.close();
-            }
-        } catch (Exception e) {
+            new ScoreJournal(new File(path)).append(this);
+        } catch (IOException e) {
             e.printStackTrace();
         }
-        // add to arraylist
-        scores.add(this);
+    }
 
-        // seralize arraylist again
-        try {
-            FileOutputStream fos = new FileOutputStream(path);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(scores);
-            oos.close();
-            fos.close();
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
+    /**
+     * Writes this GameMetric in its binary format
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param out where to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(CODEC_VERSION);
+        Varints.writeUnsigned(out, (int) this.notesPassed);
+        // hits are only ever worth whole hundredths of a note
+        Varints.writeUnsigned(out, (int) Math.round(this.notesHit * 100));
+        Varints.writeUnsigned(out, this.combo);
+        Varints.writeUnsigned(out, this.maxCombo);
+        Varints.writeUnsigned(out, this.score);
+        out.writeByte(this.previousJudgement == null ? -1 : this.previousJudgement.ordinal());
+        Varints.writeUnsigned(out, this.perfects);
+        Varints.writeUnsigned(out, this.greats);
+        Varints.writeUnsigned(out, this.goods);
+        Varints.writeUnsigned(out, this.oks);
+        Varints.writeUnsigned(out, this.misses);
+        out.writeBoolean(this.difficulty != null);
+        if (this.difficulty != null) {
+            out.writeUTF(this.difficulty);
         }
+        this.getHitTimeline().write(out);
+        Varints.writeUnsignedLong(out, this.playedAt);
+    }
 
+    /**
+     * Reads a GameMetric written by write
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param in where to read from
+     * @return the GameMetric
+     * @throws IOException if reading fails or the format version is unknown
+     */
+    public static GameMetrics read(DataInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > CODEC_VERSION) {
+            throw new IOException("Unknown score format version: " + version);
+        }
+        GameMetrics metrics = new GameMetrics(null);
+        metrics.notesPassed = Varints.readUnsigned(in);
+        metrics.notesHit = Varints.readUnsigned(in) / 100.0;
+        metrics.combo = Varints.readUnsigned(in);
+        metrics.maxCombo = Varints.readUnsigned(in);
+        metrics.score = Varints.readUnsigned(in);
+        int judgement = in.readByte();
+        metrics.previousJudgement = judgement < 0 ? null : HitJudgement.values()[judgement];
+        metrics.perfects = Varints.readUnsigned(in);
+        metrics.greats = Varints.readUnsigned(in);
+        metrics.goods = Varints.readUnsigned(in);
+        metrics.oks = Varints.readUnsigned(in);
+        metrics.misses = Varints.readUnsigned(in);
+        if (in.readBoolean()) {
+            metrics.difficulty = in.readUTF();
+        }
+        if (version >= 2) {
+            metrics.timeline = HitTimeline.read(in);
+        }
+        if (version >= 3) {
+            metrics.playedAt = Varints.readUnsignedLong(in);
+        }
+        return metrics;
     }
 
     /**
@@ -315,6 +369,60 @@ public class GameMetrics implements Serializable {
         return this.misses;
     }
 
+    /**
+     * Returns when this play was saved
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return when the play was saved in ms since the epoch, 0 if unknown
+     */
+    public long getPlayedAt() {
+        return this.playedAt;
+    }
+
+    /**
+     * Sets when this play was saved
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param playedAt when the play was saved in ms since the epoch
+     */
+    public void setPlayedAt(long playedAt) {
+        this.playedAt = playedAt;
+    }
+
+    /**
+     * Returns whether another GameMetric judged every note the same way as this
+     * one, such as one from playing back this play's replay
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param other the other GameMetric
+     * @return if the scores, judgements and combos are all the same
+     */
+    public boolean hasSameResult(GameMetrics other) {
+        // saved scores only keep the notes hit to the hundredth, and adding up
+        // the parts of a note in a different order can be off by far less
+        return this.score == other.score && this.getMaxCombo() == other.getMaxCombo()
+                && this.perfects == other.perfects && this.greats == other.greats && this.goods == other.goods
+                && this.oks == other.oks && this.misses == other.misses && this.notesPassed == other.notesPassed
+                && Math.round(this.notesHit * 100) == Math.round(other.notesHit * 100);
+    }
+
+    /**
+     * Returns the timing of every note judged in this play
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the hit timeline
+     */
+    public HitTimeline getHitTimeline() {
+        if (this.timeline == null) {
+            this.timeline = new HitTimeline(0);
+        }
+        return this.timeline;
+    }
+
     /**
      * Returns the latest hitjudgement
      * 
@@ -0,0 +1,261 @@
+package com.oaklea.urg.model;
+
+import java.util.Arrays;
+
+/**
+ * Everything the screen needs to draw the game at one step of the simulation.
+ * Snapshots are reused rather than made every step: a SnapshotBuffer only
+ * ever has the simulation fill one that the JavaFX thread isn't drawing, so
+ * neither side waits on the other and a step allocates nothing
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class GameSnapshot {
+
+    double position;
+    double songLength;
+    // the pending notes of each lane, up to the count of the lane
+    SongNote[][] notes;
+    int[] counts;
+    // the engine's changes the notes were copied at
+    int changes;
+    boolean[] lit;
+    int combo;
+    double accuracy;
+    int score;
+    int perfects;
+    int greats;
+    int goods;
+    int oks;
+    int misses;
+    HitJudgement previousJudgement;
+    int hitsounds;
+
+    /**
+     * Creates a new, empty GameSnapshot to be filled
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    GameSnapshot() {
+        this.notes = new SongNote[NoteTable.LANES][16];
+        this.counts = new int[NoteTable.LANES];
+        this.changes = -1;
+        this.lit = new boolean[NoteTable.LANES];
+    }
+
+    /**
+     * Copies the state of the game into this snapshot. The notes are only
+     * copied again if they've changed since this snapshot last held them
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param engine     the game
+     * @param position   the position of the song in seconds
+     * @param songLength the length of the song in seconds
+     */
+    void fill(GameEngine engine, double position, double songLength) {
+        this.position = position;
+        this.songLength = songLength;
+        if (this.changes != engine.getChanges()) {
+            for (int lane = 0; lane < NoteTable.LANES; lane++) {
+                int count = engine.getPendingCount(lane);
+                if (count > this.notes[lane].length) {
+                    this.notes[lane] = new SongNote[Math.max(count, this.notes[lane].length * 2)];
+                }
+                int previous = this.counts[lane];
+                this.counts[lane] = engine.getPending(lane, this.notes[lane]);
+                if (previous > this.counts[lane]) {
+                    // don't hold on to notes that have gone back to be reused
+                    Arrays.fill(this.notes[lane], this.counts[lane], previous, null);
+                }
+            }
+            this.changes = engine.getChanges();
+        }
+        for (int lane = 0; lane < NoteTable.LANES; lane++) {
+            this.lit[lane] = engine.isLit(lane);
+        }
+        GameMetrics metrics = engine.getMetrics();
+        this.combo = metrics.getCombo();
+        this.accuracy = metrics.getAccuracy();
+        this.score = metrics.getScore();
+        this.perfects = metrics.getPerfects();
+        this.greats = metrics.getGreats();
+        this.goods = metrics.getGoods();
+        this.oks = metrics.getOKs();
+        this.misses = metrics.getMisses();
+        this.previousJudgement = metrics.getPreviousJudgement();
+        this.hitsounds = engine.getHitsounds();
+    }
+
+    /**
+     * Gets the position of the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the position in seconds
+     */
+    public double getPosition() {
+        return this.position;
+    }
+
+    /**
+     * Gets the length of the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the length in seconds
+     */
+    public double getSongLength() {
+        return this.songLength;
+    }
+
+    /**
+     * Gets the amount of notes on screen in a lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the amount of notes
+     */
+    public int getNoteCount(int lane) {
+        return this.counts[lane];
+    }
+
+    /**
+     * Gets a note on screen, in the order they started
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane
+     * @param index the index of the note in the lane
+     * @return the note
+     */
+    public SongNote getNote(int lane, int index) {
+        return this.notes[lane][index];
+    }
+
+    /**
+     * Returns whether a lane is held down
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return if the lane's receptor is lit
+     */
+    public boolean isLit(int lane) {
+        return this.lit[lane];
+    }
+
+    /**
+     * Gets the combo
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the combo
+     */
+    public int getCombo() {
+        return this.combo;
+    }
+
+    /**
+     * Gets the accuracy
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the accuracy
+     */
+    public double getAccuracy() {
+        return this.accuracy;
+    }
+
+    /**
+     * Gets the score
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the score
+     */
+    public int getScore() {
+        return this.score;
+    }
+
+    /**
+     * Gets the amount of perfects
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of perfects
+     */
+    public int getPerfects() {
+        return this.perfects;
+    }
+
+    /**
+     * Gets the amount of greats
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of greats
+     */
+    public int getGreats() {
+        return this.greats;
+    }
+
+    /**
+     * Gets the amount of goods
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of goods
+     */
+    public int getGoods() {
+        return this.goods;
+    }
+
+    /**
+     * Gets the amount of OKs
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of OKs
+     */
+    public int getOKs() {
+        return this.oks;
+    }
+
+    /**
+     * Gets the amount of misses
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of misses
+     */
+    public int getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Gets the judgement of the last judged note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the judgement, or null if nothing was judged yet
+     */
+    public HitJudgement getPreviousJudgement() {
+        return this.previousJudgement;
+    }
+
+    /**
+     * Gets how many hitsounds the simulation has asked for since the song
+     * started, for hits the player didn't make themselves
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of hitsounds
+     */
+    public int getHitsounds() {
+        return this.hitsounds;
+    }
+}
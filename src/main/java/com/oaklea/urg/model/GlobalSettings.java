@@ -2,11 +2,17 @@ package com.oaklea.urg.model;
 
 import javafx.scene.paint.Color;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * A class containing some global settings of the app, including volume, colors,
@@ -17,9 +23,16 @@ import java.io.Serializable;
  */
 public class GlobalSettings implements Serializable {
 
+    // pinned so settings saved before the binary format can still be migrated
+    private static final long serialVersionUID = 686278674362623817L;
+    static final int MAGIC = 0x55524753; // "URGS"
+    // version 2 added the audio offset
+    static final int VERSION = 2;
+
     double hitsoundVolume;
     double musicVolume;
     SerializableColor[] laneColors;
+    double audioOffset;
 
     /**
      * Creates a new GlobalSettings object
@@ -39,27 +52,77 @@ public class GlobalSettings implements Serializable {
     }
 
     /**
-     * Serializes this object to a given path
+     * Writes this object to a given path in its binary format
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param path the path to serialize to
+     * @param path the path to write to
      */
     public void save(String path) {
+        File file = new File(path);
+        File temp = new File(path + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeDouble(this.hitsoundVolume);
+            out.writeDouble(this.musicVolume);
+            out.writeByte(this.laneColors.length);
+            for (SerializableColor laneColor : this.laneColors) {
+                Color color = laneColor.getFXColor();
+                out.writeDouble(color.getRed());
+                out.writeDouble(color.getGreen());
+                out.writeDouble(color.getBlue());
+                out.writeDouble(color.getOpacity());
+            }
+            out.writeDouble(this.audioOffset);
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return;
+        }
         try {
-            File file = new File(path);
-
-            FileOutputStream fos = new FileOutputStream(file);
-            ObjectOutputStream oos = new ObjectOutputStream(fos);
-            oos.writeObject(this);
-            oos.close();
-            fos.close();
-
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException ioe) {
             ioe.printStackTrace();
         }
     }
 
+    /**
+     * Reads settings written by save
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the settings file
+     * @return the settings
+     * @throws IOException if the file can't be read or isn't a settings file
+     */
+    public static GlobalSettings load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a settings file: " + file.getPath());
+            }
+            int version = in.readUnsignedShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unknown settings version " + version + ": " + file.getPath());
+            }
+            GlobalSettings settings = new GlobalSettings();
+            settings.hitsoundVolume = in.readDouble();
+            settings.musicVolume = in.readDouble();
+            int lanes = in.readUnsignedByte();
+            for (int i = 0; i < lanes; i++) {
+                SerializableColor color = new SerializableColor(in.readDouble(), in.readDouble(), in.readDouble(),
+                        in.readDouble());
+                if (i < settings.laneColors.length) {
+                    settings.laneColors[i] = color;
+                }
+            }
+            if (version >= 2) {
+                settings.audioOffset = in.readDouble();
+            }
+            return settings;
+        }
+    }
+
     /**
      * Returns the list of available colors to set the settings to
      * 
@@ -105,6 +168,17 @@ public class GlobalSettings implements Serializable {
         this.hitsoundVolume = newVolume;
     }
 
+    /**
+     * Sets the audio offset
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param offset how late the music is heard after it's played, in ms
+     */
+    public void setAudioOffset(double offset) {
+        this.audioOffset = offset;
+    }
+
     /**
      * Returns the current colors for each lane
      * 
@@ -141,9 +215,22 @@ public class GlobalSettings implements Serializable {
     public double getHitsoundVolume() {
         return this.hitsoundVolume;
     }
+
+    /**
+     * Returns the current audio offset
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return how late the music is heard after it's played, in ms
+     */
+    public double getAudioOffset() {
+        return this.audioOffset;
+    }
 }
 
 class SerializableColor implements Serializable {
+    private static final long serialVersionUID = 7553177175673651599L;
+
     private double red;
     private double green;
     private double blue;
@@ -166,4 +253,4 @@ class SerializableColor implements Serializable {
     public Color getFXColor() {
         return new Color(red, green, blue, alpha);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,253 @@
+package com.oaklea.urg.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The timing error, lane and judgement of every note in a play, in the order
+ * they were judged. Entries go into primitive arrays sized up front, so
+ * recording a hit while the song plays never allocates. If a play somehow
+ * judges more notes than there's room for, the oldest entries are overwritten.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class HitTimeline {
+
+    // room for at least this many notes, even if the song's note count is unknown
+    static final int MIN_CAPACITY = 1024;
+
+    // timing errors in tenths of a ms, positive is late
+    short[] errors;
+    byte[] lanes;
+    byte[] judgements;
+    int head;
+    int count;
+
+    /**
+     * Creates a new, empty HitTimeline with room for a given amount of notes
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param capacity the amount of notes to make room for
+     */
+    public HitTimeline(int capacity) {
+        this.allocate(Math.max(capacity, MIN_CAPACITY));
+    }
+
+    private HitTimeline() {
+    }
+
+    private void allocate(int capacity) {
+        this.errors = new short[capacity];
+        this.lanes = new byte[capacity];
+        this.judgements = new byte[capacity];
+    }
+
+    /**
+     * Records a note that was hit
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane      the lane of the note
+     * @param errorMs   how late the note was hit in ms, negative if early
+     * @param judgement the judgement the hit got
+     */
+    public void recordHit(int lane, double errorMs, HitJudgement judgement) {
+        double tenths = Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(errorMs * 10)));
+        this.record(lane, (short) tenths, judgement);
+    }
+
+    /**
+     * Records a note that was missed
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane of the note
+     */
+    public void recordMiss(int lane) {
+        this.record(lane, (short) 0, HitJudgement.MISS);
+    }
+
+    private void record(int lane, short error, HitJudgement judgement) {
+        int capacity = this.errors.length;
+        int slot = this.head + this.count;
+        if (slot >= capacity) {
+            slot -= capacity;
+        }
+        this.errors[slot] = error;
+        this.lanes[slot] = (byte) lane;
+        this.judgements[slot] = (byte) judgement.ordinal();
+        if (this.count < capacity) {
+            this.count++;
+        } else if (++this.head == capacity) {
+            this.head = 0;
+        }
+    }
+
+    /**
+     * Gets the amount of notes recorded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of notes
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Gets the timing error of a recorded note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the note, 0 being the first judged
+     * @return how late the note was hit in ms, negative if early, 0 if missed
+     */
+    public double getError(int index) {
+        return this.errors[this.slot(index)] / 10.0;
+    }
+
+    /**
+     * Gets the lane of a recorded note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the note, 0 being the first judged
+     * @return the lane of the note
+     */
+    public int getLane(int index) {
+        return this.lanes[this.slot(index)];
+    }
+
+    /**
+     * Gets the judgement of a recorded note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the note, 0 being the first judged
+     * @return the judgement of the note
+     */
+    public HitJudgement getJudgement(int index) {
+        return HitJudgement.values()[this.judgements[this.slot(index)]];
+    }
+
+    private int slot(int index) {
+        int slot = this.head + index;
+        return slot >= this.errors.length ? slot - this.errors.length : slot;
+    }
+
+    /**
+     * Gets the average timing error of the notes that were hit
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the mean error in ms, positive if late on average
+     */
+    public double getMeanError() {
+        long sum = 0;
+        int hits = 0;
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.slot(i);
+            if (this.judgements[slot] != HitJudgement.MISS.ordinal()) {
+                sum += this.errors[slot];
+                hits++;
+            }
+        }
+        return hits == 0 ? 0 : sum / 10.0 / hits;
+    }
+
+    /**
+     * Gets the unstable rate of the notes that were hit: ten times the standard
+     * deviation of their timing errors in ms. Lower is more consistent
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the unstable rate
+     */
+    public double getUnstableRate() {
+        double mean = this.getMeanError();
+        double squares = 0;
+        int hits = 0;
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.slot(i);
+            if (this.judgements[slot] != HitJudgement.MISS.ordinal()) {
+                double deviation = this.errors[slot] / 10.0 - mean;
+                squares += deviation * deviation;
+                hits++;
+            }
+        }
+        return hits == 0 ? 0 : Math.sqrt(squares / hits) * 10;
+    }
+
+    /**
+     * Counts the hits whose timing errors fall in each of a row of equal width
+     * bins, from -rangeMs to +rangeMs. Hits outside the range go in the bins at
+     * the ends
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param bins    the amount of bins
+     * @param rangeMs the largest error shown on either side of 0 in ms
+     * @return the amount of hits in each bin, earliest first
+     */
+    public int[] histogram(int bins, double rangeMs) {
+        int[] counts = new int[bins];
+        double width = rangeMs * 2 / bins;
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.slot(i);
+            if (this.judgements[slot] != HitJudgement.MISS.ordinal()) {
+                int bin = (int) Math.floor((this.errors[slot] / 10.0 + rangeMs) / width);
+                counts[Math.max(0, Math.min(bins - 1, bin))]++;
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Writes the recorded notes, oldest first
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param out where to write to
+     * @throws IOException if writing fails
+     */
+    public void write(DataOutput out) throws IOException {
+        Varints.writeUnsigned(out, this.count);
+        for (int i = 0; i < this.count; i++) {
+            int slot = this.slot(i);
+            out.writeByte(this.lanes[slot] << 4 | this.judgements[slot]);
+            if (this.judgements[slot] != HitJudgement.MISS.ordinal()) {
+                Varints.writeSigned(out, this.errors[slot]);
+            }
+        }
+    }
+
+    /**
+     * Reads notes written by write
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param in where to read from
+     * @return the HitTimeline
+     * @throws IOException if reading fails
+     */
+    public static HitTimeline read(DataInput in) throws IOException {
+        int count = Varints.readUnsigned(in);
+        // saved timelines are never added to, so don't leave any spare room
+        HitTimeline timeline = new HitTimeline();
+        timeline.allocate(count);
+        HitJudgement[] judgements = HitJudgement.values();
+        for (int i = 0; i < count; i++) {
+            int packed = in.readUnsignedByte();
+            int judgement = packed & 0xF;
+            if (judgement >= judgements.length) {
+                throw new IOException("Unknown judgement: " + judgement);
+            }
+            short error = judgement == HitJudgement.MISS.ordinal() ? 0 : (short) Varints.readSigned(in);
+            timeline.record(packed >>> 4, error, judgements[judgement]);
+        }
+        return timeline;
+    }
+}
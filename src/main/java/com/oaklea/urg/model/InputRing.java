@@ -0,0 +1,97 @@
+package com.oaklea.urg.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed size ring of key presses and releases, each a lane and the instant
+ * it happened, passed from the JavaFX thread to the thread running the game.
+ * Exactly one thread may offer events and one other thread may drain them.
+ * Neither side ever locks or allocates, so a key press never waits on a step
+ * of the game or on rendering
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class InputRing {
+
+    static final int PRESSED = 0x4;
+
+    final long[] times;
+    final byte[] events;
+    final int mask;
+    // the next event to write, only moved by the thread offering events
+    final AtomicLong head;
+    // the next event to read, only moved by the thread draining events
+    final AtomicLong tail;
+    // the offering thread's last look at tail, so it rarely has to read it
+    long knownTail;
+
+    /**
+     * Creates a new, empty InputRing
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param capacity the most events the ring holds, rounded up to a power of
+     *                 two
+     */
+    public InputRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.times = new long[size];
+        this.events = new byte[size];
+        this.mask = size - 1;
+        this.head = new AtomicLong();
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Adds a press or release to the ring. Only ever called from one thread
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane     the lane
+     * @param pressed  whether the lane was pressed or released
+     * @param nanoTime when it happened, from System.nanoTime
+     * @return false if the ring was full and the event wasn't added
+     */
+    public boolean offer(int lane, boolean pressed, long nanoTime) {
+        long head = this.head.get();
+        if (head - this.knownTail >= this.times.length) {
+            this.knownTail = this.tail.get();
+            if (head - this.knownTail >= this.times.length) {
+                return false;
+            }
+        }
+        int slot = (int) head & this.mask;
+        this.times[slot] = nanoTime;
+        this.events[slot] = (byte) (lane | (pressed ? PRESSED : 0));
+        // publishes the slot to the draining thread
+        this.head.lazySet(head + 1);
+        return true;
+    }
+
+    /**
+     * Feeds every event in the ring to a GameEngine, oldest first. Only ever
+     * called from one thread at a time, other than the one offering events
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param engine the engine to press and release lanes on
+     * @return the amount of events drained
+     */
+    public int drain(GameEngine engine) {
+        long tail = this.tail.get();
+        long head = this.head.get();
+        for (long i = tail; i < head; i++) {
+            int slot = (int) i & this.mask;
+            int event = this.events[slot];
+            if ((event & PRESSED) != 0) {
+                engine.press(event & (PRESSED - 1), this.times[slot]);
+            } else {
+                engine.release(event & (PRESSED - 1), this.times[slot]);
+            }
+        }
+        // hands the slots back to the offering thread
+        this.tail.lazySet(head);
+        return (int) (head - tail);
+    }
+}
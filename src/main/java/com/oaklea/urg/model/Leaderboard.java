@@ -0,0 +1,134 @@
+package com.oaklea.urg.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The scores of one chart, ranked by points. The best scores are kept in a
+ * small sorted array that's updated as each score is added, so showing them
+ * never sorts anything. Every other score can still be looked at a page at a
+ * time; the full ranking is only sorted when a page past the best scores is
+ * asked for, and is kept until the next score is added.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class Leaderboard {
+
+    // amount of best scores kept sorted at all times
+    public static final int TOP = 10;
+
+    int[] topPoints;
+    GameMetrics[] top;
+    int topSize;
+    ArrayList<GameMetrics> history;
+    ArrayList<GameMetrics> ranked;
+
+    /**
+     * Creates a new, empty Leaderboard
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public Leaderboard() {
+        this.topPoints = new int[TOP];
+        this.top = new GameMetrics[TOP];
+        this.history = new ArrayList<GameMetrics>();
+    }
+
+    /**
+     * Adds a score to the leaderboard. A score ties with earlier scores of the
+     * same points by ranking below them
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param score the new score
+     */
+    public void add(GameMetrics score) {
+        this.history.add(score);
+        this.ranked = null;
+        int points = score.getScore();
+        if (this.topSize == TOP && points <= this.topPoints[TOP - 1]) {
+            return;
+        }
+        // first place with fewer points than the new score
+        int low = 0;
+        int high = this.topSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.topPoints[mid] >= points) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int moved = Math.min(this.topSize, TOP - 1) - low;
+        System.arraycopy(this.topPoints, low, this.topPoints, low + 1, moved);
+        System.arraycopy(this.top, low, this.top, low + 1, moved);
+        this.topPoints[low] = points;
+        this.top[low] = score;
+        this.topSize = Math.min(this.topSize + 1, TOP);
+    }
+
+    /**
+     * Gets the amount of scores on the leaderboard
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of scores
+     */
+    public int size() {
+        return this.history.size();
+    }
+
+    /**
+     * Gets the best scores, best first
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return up to TOP of the best scores
+     */
+    public List<GameMetrics> getTop() {
+        return Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(this.top, this.topSize)));
+    }
+
+    /**
+     * Gets a page of the ranking, best first. Pages that fit inside the best
+     * scores don't need the full ranking
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param page     the page, starting at 0
+     * @param pageSize the amount of scores on a page
+     * @return the scores on the page, empty if the page is past the last score
+     */
+    public List<GameMetrics> getPage(int page, int pageSize) {
+        int from = page * pageSize;
+        int to = Math.min(from + pageSize, this.size());
+        if (from >= to) {
+            return Collections.emptyList();
+        }
+        if (to <= this.topSize) {
+            return this.getTop().subList(from, to);
+        }
+        if (this.ranked == null) {
+            this.ranked = new ArrayList<GameMetrics>(this.history);
+            // stable, so ties stay in the order they were played
+            this.ranked.sort((a, b) -> Integer.compare(b.getScore(), a.getScore()));
+        }
+        return Collections.unmodifiableList(this.ranked.subList(from, to));
+    }
+
+    /**
+     * Gets every score in the order they were added
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the scores, oldest first
+     */
+    public List<GameMetrics> getHistory() {
+        return Collections.unmodifiableList(this.history);
+    }
+}
@@ -0,0 +1,139 @@
+package com.oaklea.urg.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+
+/**
+ * Converts files saved with Java serialization to the game's own binary
+ * formats. Settings are rewritten in place and each song folder's scores.gm is
+ * moved into a score journal; the old files are kept with a .bak extension.
+ * Files that were already converted are left alone, so it's safe to run on
+ * every start.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class LegacyMigrator {
+
+    static final String LEGACY_SCORES = "scores.gm";
+    // every Java serialization stream starts with these two bytes
+    static final int STREAM_MAGIC = 0xACED;
+
+    /**
+     * Converts the settings file and the scores of every song folder
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param settingsFile  the settings file
+     * @param songDirectory the directory containing a folder for every song
+     */
+    public static void migrate(File settingsFile, File songDirectory) {
+        try {
+            migrateSettings(settingsFile);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        File[] directories = songDirectory.listFiles();
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            try {
+                migrateScores(directory);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns whether or not a file was written with Java serialization
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the file to check
+     * @return if the file starts with the Java serialization magic number
+     */
+    public static boolean isJavaSerialized(File file) {
+        if (file.length() < 2) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readUnsignedShort() == STREAM_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    static void migrateSettings(File settingsFile) throws IOException {
+        if (!isJavaSerialized(settingsFile)) {
+            return;
+        }
+        GlobalSettings settings;
+        try (FileInputStream in = new FileInputStream(settingsFile)) {
+            settings = readSerialized(in, GlobalSettings.class);
+        }
+        backUp(settingsFile);
+        settings.save(settingsFile.getPath());
+    }
+
+    static void migrateScores(File directory) throws IOException {
+        File legacy = new File(directory, LEGACY_SCORES);
+        if (!isJavaSerialized(legacy)) {
+            return;
+        }
+        ArrayList<GameMetrics> scores = new ArrayList<GameMetrics>();
+        try (FileInputStream in = new FileInputStream(legacy)) {
+            for (Object o : readSerialized(in, ArrayList.class)) {
+                if (o instanceof GameMetrics) {
+                    scores.add((GameMetrics) o);
+                }
+            }
+        }
+        ScoreJournal journal = new ScoreJournal(new File(directory, ScoreJournal.FILE_NAME));
+        // keep anything that was already saved to a journal after the old scores
+        scores.addAll(journal.readAll());
+        journal.compact(scores);
+        backUp(legacy);
+    }
+
+    /**
+     * Reads one serialized object out of part of an array
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param bytes  the array
+     * @param offset where the object starts
+     * @param length the length of the object in bytes
+     * @param type   the class the object should be
+     * @return the object
+     * @throws IOException if the object can't be read or isn't of the given type
+     */
+    static <T> T readSerialized(byte[] bytes, int offset, int length, Class<T> type) throws IOException {
+        return readSerialized(new ByteArrayInputStream(bytes, offset, length), type);
+    }
+
+    private static <T> T readSerialized(InputStream in, Class<T> type) throws IOException {
+        try (ObjectInputStream ois = new ObjectInputStream(in)) {
+            Object obj = ois.readObject();
+            if (!type.isInstance(obj)) {
+                throw new IOException("Expected a " + type.getSimpleName() + " but found " + obj);
+            }
+            return type.cast(obj);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void backUp(File file) throws IOException {
+        Files.move(file.toPath(), new File(file.getPath() + ".bak").toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
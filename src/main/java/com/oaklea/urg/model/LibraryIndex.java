@@ -0,0 +1,189 @@
+package com.oaklea.urg.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An on-disk index of the metadata of every song file in the library. Each
+ * entry is keyed by the song file's path and remembers the file's modification
+ * time and length, so a song file only has to be opened again when it changes.
+ * Songs can be looked up from several threads at once.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class LibraryIndex {
+
+    static final int MAGIC = 0x55524749; // "URGI"
+    static final int VERSION = 1;
+
+    File indexFile;
+    Map<String, Entry> entries;
+    Set<String> seen;
+    volatile boolean dirty;
+
+    /**
+     * Creates a LibraryIndex backed by a file, reading in any entries already
+     * stored in it
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param indexFile the file the index is stored in
+     */
+    public LibraryIndex(File indexFile) {
+        this.indexFile = indexFile;
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.seen = ConcurrentHashMap.newKeySet();
+        this.readIn();
+    }
+
+    private void readIn() {
+        if (this.indexFile.length() == 0) { // check if no index yet
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(this.indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                this.dirty = true;
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry();
+                entry.path = in.readUTF();
+                entry.modified = in.readLong();
+                entry.length = in.readLong();
+                entry.title = in.readUTF();
+                entry.artist = in.readUTF();
+                entry.difficulty = in.readUTF();
+                entry.previewTime = in.readInt();
+                entry.noteCount = in.readInt();
+                entry.duration = in.readDouble();
+                this.entries.put(entry.path, entry);
+            }
+        } catch (IOException e) {
+            // a broken index is just rebuilt
+            e.printStackTrace();
+            this.entries.clear();
+            this.dirty = true;
+        }
+    }
+
+    /**
+     * Gets the Song for a song file, using its index entry if the file hasn't
+     * changed since it was indexed and reading the file in otherwise
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the song file
+     * @return the Song, or null if the song file couldn't be read
+     */
+    public Song getSong(File songFile) {
+        String path = songFile.getPath();
+        this.seen.add(path);
+        Entry entry = this.entries.get(path);
+        if (entry == null || entry.modified != songFile.lastModified() || entry.length != songFile.length()) {
+            try {
+                entry = this.createEntry(songFile);
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                this.entries.remove(path);
+                this.dirty = true;
+                return null;
+            }
+            this.entries.put(path, entry);
+            this.dirty = true;
+        }
+        return new Song(songFile, entry.title, entry.artist, entry.difficulty, entry.previewTime, entry.noteCount,
+                entry.duration);
+    }
+
+    private Entry createEntry(File songFile) throws IOException {
+        Entry entry = new Entry();
+        entry.path = songFile.getPath();
+        entry.modified = songFile.lastModified();
+        entry.length = songFile.length();
+        String[] header = Song.readHeader(songFile);
+        if (header[3] == null) {
+            throw new IOException("Incomplete song header: " + songFile.getPath());
+        }
+        entry.title = header[0];
+        entry.artist = header[1];
+        entry.difficulty = header[2];
+        entry.previewTime = Integer.parseInt(header[3]);
+        // compiling here also means the chart is ready to play
+        NoteTable notes = CompiledChart.load(songFile);
+        entry.noteCount = notes.size();
+        entry.duration = notes.getLastEndTime();
+        return entry;
+    }
+
+    /**
+     * Writes the index back to its file if anything changed. Entries for song
+     * files that weren't looked up since the index was read are dropped
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public synchronized void save() {
+        if (this.entries.keySet().retainAll(this.seen)) {
+            this.dirty = true;
+        }
+        if (!this.dirty) {
+            return;
+        }
+        ArrayList<Entry> snapshot = new ArrayList<Entry>(this.entries.values());
+        File temp = new File(this.indexFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (Entry entry : snapshot) {
+                    out.writeUTF(entry.path);
+                    out.writeLong(entry.modified);
+                    out.writeLong(entry.length);
+                    out.writeUTF(entry.title);
+                    out.writeUTF(entry.artist);
+                    out.writeUTF(entry.difficulty);
+                    out.writeInt(entry.previewTime);
+                    out.writeInt(entry.noteCount);
+                    out.writeDouble(entry.duration);
+                }
+            }
+            Files.move(temp.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            this.dirty = false;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * The indexed metadata of a single song file
+     */
+    static class Entry {
+        String path;
+        long modified;
+        long length;
+        String title;
+        String artist;
+        String difficulty;
+        int previewTime;
+        int noteCount;
+        double duration;
+    }
+}
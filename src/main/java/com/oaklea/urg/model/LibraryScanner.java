@@ -0,0 +1,132 @@
+package com.oaklea.urg.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scans the song library in the background. Every song folder is read on its
+ * own task in the common ForkJoinPool, so the headers, scores and background
+ * image of different folders are read in parallel. Each SongGroup is handed
+ * to onGroupScanned as soon as its folder is done, rather than once the whole
+ * library has been read.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public abstract class LibraryScanner {
+
+    File songDirectory;
+    LibraryIndex index;
+
+    /**
+     * Creates a new LibraryScanner for a song directory
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songDirectory the directory containing a folder for every song
+     * @param index         the library index to read song metadata through
+     */
+    public LibraryScanner(File songDirectory, LibraryIndex index) {
+        this.songDirectory = songDirectory;
+        this.index = index;
+    }
+
+    /**
+     * Starts scanning the library. Returns immediately; the scan runs on the
+     * common pool, so no threads are made or left behind per scan
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void start() {
+        ForkJoinPool.commonPool().execute(new ScanLibraryTask());
+    }
+
+    /**
+     * Reads a single song folder into a SongGroup
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param directory the song folder
+     * @return the SongGroup, or null if the folder has no readable songs
+     */
+    public SongGroup scanDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null)
+            return null;
+        SongGroup group = new SongGroup(directory.getName());
+        for (File file : files) {
+            if (file.getName().contains(".txt")) {
+                Song song = this.index.getSong(file);
+                if (song != null) {
+                    group.addSong(song);
+                }
+            }
+        }
+        if (group.getSongs().size() == 0)
+            return null;
+        // only point at a background that's actually there
+        File background = new File(directory, "bg.png");
+        group.setImagePath(background.isFile() ? background.getAbsolutePath() : null);
+        return group;
+    }
+
+    /**
+     * Called from a scanning thread whenever a song folder has been read
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param group the SongGroup read from the folder
+     */
+    public abstract void onGroupScanned(SongGroup group);
+
+    /**
+     * Called from a scanning thread once every song folder has been read
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public abstract void onScanFinished();
+
+    class ScanLibraryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void compute() {
+            File[] directories = songDirectory.listFiles();
+            if (directories != null) {
+                ArrayList<ScanDirectoryTask> tasks = new ArrayList<ScanDirectoryTask>();
+                for (File directory : directories) {
+                    if (directory.isDirectory()) {
+                        tasks.add(new ScanDirectoryTask(directory));
+                    }
+                }
+                invokeAll(tasks);
+            }
+            index.save();
+            onScanFinished();
+        }
+    }
+
+    class ScanDirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        File directory;
+
+        ScanDirectoryTask(File directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            SongGroup group = scanDirectory(this.directory);
+            if (group != null) {
+                onGroupScanned(group);
+            }
+        }
+    }
+}
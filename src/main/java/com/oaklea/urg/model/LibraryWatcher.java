@@ -0,0 +1,193 @@
+package com.oaklea.urg.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the song directory and its song folders for changes in the
+ * background. Only the folders that changed are read in again, and each one is
+ * reported through onGroupUpdated or onGroupRemoved so the library can be
+ * patched in place instead of rescanned.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public abstract class LibraryWatcher implements Runnable {
+
+    // how long to wait for a burst of file writes to finish before rescanning
+    static final long SETTLE_MILLIS = 250;
+
+    File songDirectory;
+    LibraryScanner scanner;
+    LibraryIndex index;
+    WatchService service;
+    HashMap<WatchKey, Path> keys;
+    Thread thread;
+
+    /**
+     * Creates a new LibraryWatcher for a song directory
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songDirectory the directory containing a folder for every song
+     * @param scanner       the scanner used to read changed folders
+     * @param index         the library index to save after changes
+     */
+    public LibraryWatcher(File songDirectory, LibraryScanner scanner, LibraryIndex index) {
+        this.songDirectory = songDirectory;
+        this.scanner = scanner;
+        this.index = index;
+        this.keys = new HashMap<WatchKey, Path>();
+    }
+
+    /**
+     * Starts watching the song directory on a background thread
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void start() {
+        try {
+            this.service = FileSystems.getDefault().newWatchService();
+            this.register(this.songDirectory.toPath());
+            File[] directories = this.songDirectory.listFiles();
+            if (directories != null) {
+                for (File directory : directories) {
+                    if (directory.isDirectory()) {
+                        this.register(directory.toPath());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        this.thread = new Thread(this, "library-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Stops watching the song directory
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void stop() {
+        try {
+            if (this.service != null) {
+                this.service.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(this.service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.keys.put(key, directory);
+    }
+
+    /**
+     * Waits for changes and reads in the song folders they touched
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                HashSet<String> changed = new HashSet<String>();
+                this.collect(this.service.take(), changed);
+                WatchKey key = this.service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    this.collect(key, changed);
+                    key = this.service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                for (String name : changed) {
+                    File directory = new File(this.songDirectory, name);
+                    SongGroup group = directory.isDirectory() ? this.scanner.scanDirectory(directory) : null;
+                    if (group != null) {
+                        this.onGroupUpdated(group);
+                    } else {
+                        this.onGroupRemoved(name);
+                    }
+                }
+                this.index.save();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // watcher was stopped
+        }
+    }
+
+    private void collect(WatchKey key, HashSet<String> changed) {
+        Path directory = this.keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // lost track of what happened, look at every folder again
+                File[] directories = this.songDirectory.listFiles();
+                if (directories != null) {
+                    for (File file : directories) {
+                        changed.add(file.getName());
+                    }
+                }
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (directory.equals(this.songDirectory.toPath())) {
+                // a song folder was added or removed
+                changed.add(name.toString());
+                Path child = directory.resolve(name);
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && child.toFile().isDirectory()) {
+                    try {
+                        this.register(child);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            } else if (directory != null && isRelevant(name.toString())) {
+                changed.add(directory.getFileName().toString());
+            }
+        }
+        if (!key.reset()) {
+            this.keys.remove(key);
+        }
+    }
+
+    private static boolean isRelevant(String fileName) {
+        // compiled charts and score files are written by the game itself
+        return fileName.contains(".txt") || fileName.equals("bg.png");
+    }
+
+    /**
+     * Called from the watcher thread when a song folder was added or changed
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param group the SongGroup read from the folder
+     */
+    public abstract void onGroupUpdated(SongGroup group);
+
+    /**
+     * Called from the watcher thread when a song folder was removed or no
+     * longer has any readable songs
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param title the title of the removed SongGroup
+     */
+    public abstract void onGroupRemoved(String title);
+}
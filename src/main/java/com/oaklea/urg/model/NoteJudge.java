@@ -0,0 +1,269 @@
+package com.oaklea.urg.model;
+
+/**
+ * Judges the notes of a song against presses using nothing but song time.
+ * Notes come due when the song reaches their start time, are judged by the
+ * first press that lands inside a hit window and are missed once the song is
+ * past their widest window, earliest deadline first across every lane. Time
+ * only moves forward. Since frames never come into it, feeding the same
+ * presses at the same times always gives the same GameMetrics, which is what
+ * makes replays possible.
+ *
+ * Each note moves through the NoteStates as the song's time passes their
+ * start time and hit windows, and the NoteSink is told about every move, so
+ * nothing watching the judge ever has to work out for itself when a note is
+ * missed. Each lane's notes are kept in a NoteLane, so a press finds its note
+ * with a binary search and its judgement with a single table lookup, however
+ * many notes are on screen.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class NoteJudge {
+
+    static final double PERFECT_WINDOW = 18;
+    static final double GREAT_WINDOW = 43;
+    static final double GOOD_WINDOW = 76;
+    // a note nobody has hit this long after its end time is missed
+    static final double OK_WINDOW = 127;
+    // the judgement for an error of up to each whole ms, null past the widest window
+    static final HitJudgement[] JUDGEMENTS = new HitJudgement[(int) OK_WINDOW + 1];
+
+    static {
+        for (int ms = 0; ms < JUDGEMENTS.length; ms++) {
+            if (ms <= PERFECT_WINDOW) {
+                JUDGEMENTS[ms] = HitJudgement.PERFECT;
+            } else if (ms <= GREAT_WINDOW) {
+                JUDGEMENTS[ms] = HitJudgement.GREAT;
+            } else if (ms <= GOOD_WINDOW) {
+                JUDGEMENTS[ms] = HitJudgement.GOOD;
+            } else {
+                JUDGEMENTS[ms] = HitJudgement.OK;
+            }
+        }
+    }
+
+    NoteSource notes;
+    GameMetrics metrics;
+    boolean autoplay;
+    NoteLane[] lanes;
+    NoteSink sink;
+    double time;
+    int changes;
+
+    /**
+     * Creates a new NoteJudge
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param notes    the notes of the song, already at the point to start from
+     * @param metrics  the metrics to judge into
+     * @param autoplay whether or not every hit is judged perfect
+     * @param sink     told about notes as they start and are judged
+     */
+    public NoteJudge(NoteSource notes, GameMetrics metrics, boolean autoplay, NoteSink sink) {
+        this.notes = notes;
+        this.sink = sink;
+        this.metrics = metrics;
+        this.autoplay = autoplay;
+        this.lanes = new NoteLane[NoteTable.LANES];
+        for (int lane = 0; lane < NoteTable.LANES; lane++) {
+            this.lanes[lane] = new NoteLane(notes);
+        }
+        this.time = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Moves the judge forward to a point in the song, bringing in every note
+     * that has started and missing every note that can no longer be hit.
+     * Earlier points than the current one are ignored
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMs the point in the song in ms
+     * @return the point the judge is at in ms
+     */
+    public double advance(double timeMs) {
+        if (timeMs > this.time) {
+            this.time = timeMs;
+        }
+        for (int lane = 0; lane < NoteTable.LANES; lane++) {
+            while (this.notes.hasNext(lane) && this.time >= this.notes.peekStartTime(lane)) {
+                SongNote note = this.notes.nextNote(lane);
+                this.lanes[lane].add(note, NoteState.VISIBLE);
+                this.changes++;
+                this.sink.onSpawn(note);
+            }
+            int opened;
+            while ((opened = this.lanes[lane].open(this.time + OK_WINDOW)) >= 0) {
+                this.sink.onJudgeable(this.lanes[lane].get(opened));
+            }
+        }
+        while (true) {
+            // miss the overdue note with the earliest deadline first
+            int overdue = -1;
+            double deadline = 0;
+            for (int lane = 0; lane < NoteTable.LANES; lane++) {
+                int head = this.lanes[lane].head();
+                if (head >= 0) {
+                    double end = this.lanes[lane].getEnd(head);
+                    if (end + OK_WINDOW < this.time && (overdue < 0 || end < deadline)) {
+                        overdue = lane;
+                        deadline = end;
+                    }
+                }
+            }
+            if (overdue < 0) {
+                return this.time;
+            }
+            int head = this.lanes[overdue].head();
+            SongNote note = this.lanes[overdue].get(head);
+            this.lanes[overdue].finish(head, NoteState.EXPIRED);
+            this.changes++;
+            this.metrics.miss();
+            this.metrics.passedNote();
+            this.metrics.getHitTimeline().recordMiss(overdue);
+            this.sink.onMiss(note);
+        }
+    }
+
+    /**
+     * Judges a press of a lane at a point in the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane   the lane pressed
+     * @param timeMs the point in the song the lane was pressed at in ms
+     * @return the note that was hit, or null if the press didn't hit anything
+     */
+    public SongNote press(int lane, double timeMs) {
+        double time = this.advance(timeMs);
+        NoteLane notes = this.lanes[lane];
+        int index = this.autoplay ? notes.head() : notes.find(time - OK_WINDOW, time + OK_WINDOW);
+        if (index < 0) {
+            return null;
+        }
+        double error = time - notes.getEnd(index);
+        HitJudgement judgement = this.autoplay ? HitJudgement.PERFECT : judgementFor(error);
+        if (judgement == null) {
+            return null;
+        }
+        SongNote note = notes.get(index);
+        switch (judgement) {
+            case PERFECT:
+                this.metrics.hitPerfect(note);
+                break;
+            case GREAT:
+                this.metrics.hitGreat(note);
+                break;
+            case GOOD:
+                this.metrics.hitGood(note);
+                break;
+            default:
+                this.metrics.hitOK(note);
+                break;
+        }
+        notes.finish(index, NoteState.JUDGED);
+        this.changes++;
+        this.metrics.passedNote();
+        this.metrics.getHitTimeline().recordHit(lane, error, judgement);
+        this.sink.onHit(note);
+        return note;
+    }
+
+    /**
+     * Gets the judgement a hit gets
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param errorMs how late the note was hit in ms, negative if early
+     * @return the judgement, or null if the hit is outside every window
+     */
+    public static HitJudgement judgementFor(double errorMs) {
+        // the windows are whole ms, so rounding up never changes the judgement
+        double ms = Math.ceil(Math.abs(errorMs));
+        return ms < JUDGEMENTS.length ? JUDGEMENTS[(int) ms] : null;
+    }
+
+    /**
+     * Hits every note that has reached its end time, for autoplay
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMs the point in the song in ms
+     * @return if any note was hit
+     */
+    public boolean autoHit(double timeMs) {
+        double time = this.advance(timeMs);
+        boolean hitAny = false;
+        for (int lane = 0; lane < NoteTable.LANES; lane++) {
+            int head = this.lanes[lane].head();
+            while (head >= 0 && this.lanes[lane].getEnd(head) <= time) {
+                this.press(lane, time);
+                hitAny = true;
+                head = this.lanes[lane].head();
+            }
+        }
+        return hitAny;
+    }
+
+    /**
+     * Misses every note that hasn't been judged yet, for when the song ends
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void finish() {
+        this.advance(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Gets the amount of notes in a lane that have started but haven't been
+     * judged yet
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the amount of notes
+     */
+    public int getPendingCount(int lane) {
+        return this.lanes[lane].pendingCount();
+    }
+
+    /**
+     * Copies the notes in a lane that have started but haven't been judged yet
+     * into an array
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @param into the array, with room for at least getPendingCount notes
+     * @return the amount of notes copied, soonest to end first
+     */
+    public int getPending(int lane, SongNote[] into) {
+        return this.lanes[lane].pending(into);
+    }
+
+    /**
+     * Gets how many times a note has started or been judged, so callers can
+     * tell when the pending notes have changed
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of changes
+     */
+    public int getChanges() {
+        return this.changes;
+    }
+
+    /**
+     * Gets the metrics being judged into
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the metrics
+     */
+    public GameMetrics getMetrics() {
+        return this.metrics;
+    }
+}
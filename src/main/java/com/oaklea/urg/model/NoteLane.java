@@ -0,0 +1,251 @@
+package com.oaklea.urg.model;
+
+import java.util.Arrays;
+
+/**
+ * The notes of one lane that have started, sorted by end time, with the
+ * NoteState of each and a bit per note marking whether it's done with, judged
+ * or expired. Finishing a note only sets its state and bit, and finding the
+ * note a press lands on is a binary search, so lanes with a lot of notes on
+ * screen judge as fast as empty ones. Finished notes at the front are dropped
+ * in whole words of bits as room is needed, and handed back to their source
+ * to be reused.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+class NoteLane {
+
+    NoteSource source;
+    SongNote[] notes;
+    double[] ends;
+    byte[] states;
+    long[] judged;
+    // every note before this one is judged
+    int first;
+    // every note before this one has been judgeable
+    int opened;
+    int size;
+
+    /**
+     * Creates a new, empty NoteLane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param source where the lane's notes come from, and go back to once
+     *               they're dropped
+     */
+    NoteLane(NoteSource source) {
+        this.source = source;
+        this.notes = new SongNote[64];
+        this.ends = new double[64];
+        this.states = new byte[64];
+        this.judged = new long[1];
+    }
+
+    /**
+     * Adds a note that has just started
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note  the note
+     * @param state the state of the note
+     */
+    void add(SongNote note, NoteState state) {
+        if (this.size == this.notes.length) {
+            this.makeRoom();
+        }
+        double end = note.getEndTime();
+        int index = this.size;
+        // notes almost always end in the order they start, but keep the ends
+        // sorted for the odd chart where they don't
+        while (index > this.first && this.ends[index - 1] > end) {
+            index--;
+        }
+        for (int i = this.size; i > index; i--) {
+            this.notes[i] = this.notes[i - 1];
+            this.ends[i] = this.ends[i - 1];
+            this.states[i] = this.states[i - 1];
+            this.setJudged(i, this.isJudged(i - 1));
+        }
+        this.notes[index] = note;
+        this.ends[index] = end;
+        this.states[index] = (byte) state.ordinal();
+        this.setJudged(index, false);
+        this.opened = Math.min(this.opened, index);
+        this.size++;
+    }
+
+    private void makeRoom() {
+        int drop = this.first & ~63;
+        if (drop > 0) {
+            for (int i = 0; i < drop; i++) {
+                this.source.recycle(this.notes[i]);
+            }
+            System.arraycopy(this.notes, drop, this.notes, 0, this.size - drop);
+            System.arraycopy(this.ends, drop, this.ends, 0, this.size - drop);
+            System.arraycopy(this.states, drop, this.states, 0, this.size - drop);
+            System.arraycopy(this.judged, drop >>> 6, this.judged, 0, this.judged.length - (drop >>> 6));
+            Arrays.fill(this.notes, this.size - drop, this.size, null);
+            Arrays.fill(this.judged, this.judged.length - (drop >>> 6), this.judged.length, 0);
+            this.size -= drop;
+            this.first -= drop;
+            this.opened = Math.max(0, this.opened - drop);
+        }
+        if (this.size == this.notes.length) {
+            this.notes = Arrays.copyOf(this.notes, this.size * 2);
+            this.ends = Arrays.copyOf(this.ends, this.size * 2);
+            this.states = Arrays.copyOf(this.states, this.size * 2);
+            this.judged = Arrays.copyOf(this.judged, this.size * 2 >>> 6);
+        }
+    }
+
+    /**
+     * Gets the index of the unjudged note that ends first
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the index, or -1 if every note is judged
+     */
+    int head() {
+        this.first = this.nextUnjudged(this.first);
+        return this.first < this.size ? this.first : -1;
+    }
+
+    /**
+     * Finds the unjudged note that ends first within a range of time
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param from the earliest end time in ms
+     * @param to   the latest end time in ms
+     * @return the index of the note, or -1 if there isn't one
+     */
+    int find(double from, double to) {
+        int low = this.head();
+        if (low < 0) {
+            return -1;
+        }
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.ends[mid] < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int index = this.nextUnjudged(low);
+        return index < this.size && this.ends[index] <= to ? index : -1;
+    }
+
+    private int nextUnjudged(int index) {
+        while (index < this.size) {
+            long free = ~this.judged[index >>> 6] >>> (index & 63);
+            if (free != 0) {
+                return Math.min(this.size, index + Long.numberOfTrailingZeros(free));
+            }
+            index = (index | 63) + 1;
+        }
+        return this.size;
+    }
+
+    /**
+     * Finds the next visible note that has become judgeable, and marks it so
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param latestEnd the latest end time a judgeable note can have in ms
+     * @return the index of the note, or -1 if there isn't one
+     */
+    int open(double latestEnd) {
+        while (this.opened < this.size && this.ends[this.opened] <= latestEnd) {
+            int index = this.opened++;
+            if (this.states[index] == NoteState.VISIBLE.ordinal()) {
+                this.states[index] = (byte) NoteState.JUDGEABLE.ordinal();
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Marks a note as done with, either judged by a hit or expired
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the note
+     * @param state JUDGED or EXPIRED
+     */
+    void finish(int index, NoteState state) {
+        this.states[index] = (byte) state.ordinal();
+        this.setJudged(index, true);
+    }
+
+    private boolean isJudged(int index) {
+        return (this.judged[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void setJudged(int index, boolean judged) {
+        if (judged) {
+            this.judged[index >>> 6] |= 1L << index;
+        } else {
+            this.judged[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Gets a note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the note
+     * @return the note
+     */
+    SongNote get(int index) {
+        return this.notes[index];
+    }
+
+    /**
+     * Gets the end time of a note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the note
+     * @return the end time in ms
+     */
+    double getEnd(int index) {
+        return this.ends[index];
+    }
+
+    /**
+     * Gets the amount of notes that haven't been judged
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of notes
+     */
+    int pendingCount() {
+        int count = 0;
+        for (int i = this.head(); i >= 0 && i < this.size; i = this.nextUnjudged(i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Copies every note that hasn't been judged into an array
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param into the array, with room for at least pendingCount notes
+     * @return the amount of notes copied, soonest to end first
+     */
+    int pending(SongNote[] into) {
+        int count = 0;
+        for (int i = this.head(); i >= 0 && i < this.size; i = this.nextUnjudged(i + 1)) {
+            into[count++] = this.notes[i];
+        }
+        return count;
+    }
+}
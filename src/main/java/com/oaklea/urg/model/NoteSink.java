@@ -0,0 +1,53 @@
+package com.oaklea.urg.model;
+
+/**
+ * Told about notes as they start and are judged, such as to show them on
+ * screen. Every method does nothing unless overridden. Notes are reused for
+ * later notes some time after they're judged, so a note shouldn't be held on
+ * to past its hit or miss
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public interface NoteSink {
+
+    /**
+     * Called when a note starts and becomes visible
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note
+     */
+    default void onSpawn(SongNote note) {
+    }
+
+    /**
+     * Called when the song reaches a note's widest hit window
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note
+     */
+    default void onJudgeable(SongNote note) {
+    }
+
+    /**
+     * Called when a note is hit
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note
+     */
+    default void onHit(SongNote note) {
+    }
+
+    /**
+     * Called when a note is missed
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note
+     */
+    default void onMiss(SongNote note) {
+    }
+}
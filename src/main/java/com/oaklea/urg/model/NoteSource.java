@@ -0,0 +1,106 @@
+package com.oaklea.urg.model;
+
+/**
+ * A source of the notes in a song, handed out lane by lane in order of start
+ * time
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public interface NoteSource {
+
+    /**
+     * Returns whether or not a lane has a note ready to spawn
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return if a note is ready in the lane
+     */
+    boolean hasNext(int lane);
+
+    /**
+     * Gets the start time of the next note in a lane without taking it
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the start time of the next note in ms
+     */
+    double peekStartTime(int lane);
+
+    /**
+     * Takes the next note in a lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the next note
+     */
+    SongNote nextNote(int lane);
+
+    /**
+     * Hands back a note taken from this source that's been judged and dropped
+     * by everything that held it, so a later note can reuse it
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note, which mustn't be used again
+     */
+    void recycle(SongNote note);
+
+    /**
+     * Moves every lane to its first note that ends at or after a point in the
+     * song, so notes still on their way down at that point spawn again
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMs the point in the song in ms
+     */
+    void seek(double timeMs);
+
+    /**
+     * Creates a copy of this source for playing at a different speed, with every
+     * note time divided by the playback rate
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param rate the playback rate, e.g. 1.5 for 1.5x speed
+     * @return the retimed copy
+     */
+    NoteSource retimed(double rate);
+
+    /**
+     * Goes back to the first note of every lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    void rewind();
+
+    /**
+     * Releases anything the source holds on to while notes are being taken
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    void close();
+
+    /**
+     * Gets the amount of notes in every lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the total amount of notes
+     */
+    int size();
+
+    /**
+     * Gets the end time of the last note in the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the end time of the last note in ms, or 0 if there are no notes
+     */
+    double getLastEndTime();
+}
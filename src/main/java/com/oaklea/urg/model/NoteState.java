@@ -0,0 +1,46 @@
+package com.oaklea.urg.model;
+
+/**
+ * An enumeration to represent where a note is in its life. A note is pending
+ * until the song reaches its start time, visible as it travels down its lane,
+ * judgeable once the song is inside its widest hit window, and then either
+ * judged by a hit or expired once the window has passed. Every state but
+ * judged follows from the song's time alone
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public enum NoteState {
+    PENDING, VISIBLE, JUDGEABLE, JUDGED, EXPIRED;
+
+    /**
+     * Gets the state a note that hasn't been hit is in at a point in the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note   the note
+     * @param timeMs the point in the song in ms
+     * @return the state of the note
+     */
+    public static NoteState at(SongNote note, double timeMs) {
+        if (timeMs < note.getStartTime()) {
+            return PENDING;
+        } else if (timeMs < note.getEndTime() - NoteJudge.OK_WINDOW) {
+            return VISIBLE;
+        } else if (timeMs <= note.getEndTime() + NoteJudge.OK_WINDOW) {
+            return JUDGEABLE;
+        }
+        return EXPIRED;
+    }
+
+    /**
+     * Returns whether a note in this state is shown on screen
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return if the note is visible or judgeable
+     */
+    public boolean isOnScreen() {
+        return this == VISIBLE || this == JUDGEABLE;
+    }
+}
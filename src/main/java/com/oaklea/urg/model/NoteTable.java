@@ -0,0 +1,386 @@
+package com.oaklea.urg.model;
+
+import java.util.ArrayList;
+
+/**
+ * An immutable table of the notes in a song, stored as primitive columns for
+ * each lane and sorted by start time. Notes are handed out through a read
+ * cursor per lane that only moves forward, so spawning the next note never has
+ * to shift the rest of the lane. Rewinding the cursors lets the same table be
+ * played again without re-reading the song file.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class NoteTable implements NoteSource {
+
+    public static final int LANES = 4;
+
+    double[][] startTimes;
+    double[][] endTimes;
+    double[][] pointValues;
+    int[][] ids;
+    long[][] faders;
+    int[] cursor;
+    SongNotePool pool;
+
+    /**
+     * Creates a new, empty NoteTable with room for a given amount of notes in
+     * each lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param counts the amount of notes in each lane
+     */
+    NoteTable(int[] counts) {
+        this.startTimes = new double[LANES][];
+        this.endTimes = new double[LANES][];
+        this.pointValues = new double[LANES][];
+        this.ids = new int[LANES][];
+        this.faders = new long[LANES][];
+        this.cursor = new int[LANES];
+        this.pool = new SongNotePool();
+        for (int lane = 0; lane < LANES; lane++) {
+            this.startTimes[lane] = new double[counts[lane]];
+            this.endTimes[lane] = new double[counts[lane]];
+            this.pointValues[lane] = new double[counts[lane]];
+            this.ids[lane] = new int[counts[lane]];
+            this.faders[lane] = new long[(counts[lane] + 63) >>> 6];
+        }
+    }
+
+    private NoteTable(NoteTable other) {
+        // the times are replaced by the caller, everything else never changes
+        this.startTimes = new double[LANES][];
+        this.endTimes = new double[LANES][];
+        this.pointValues = other.pointValues;
+        this.ids = other.ids;
+        this.faders = other.faders;
+        this.cursor = new int[LANES];
+        this.pool = new SongNotePool();
+    }
+
+    /**
+     * Creates a NoteTable out of lists of notes. Each lane must already be sorted
+     * by start time.
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param notes the notes of each lane
+     * @return the new NoteTable
+     */
+    static NoteTable of(ArrayList<ArrayList<SongNote>> notes) {
+        int[] counts = new int[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            counts[lane] = notes.get(lane).size();
+        }
+        NoteTable table = new NoteTable(counts);
+        for (int lane = 0; lane < LANES; lane++) {
+            ArrayList<SongNote> laneNotes = notes.get(lane);
+            for (int i = 0; i < laneNotes.size(); i++) {
+                SongNote note = laneNotes.get(i);
+                table.set(lane, i, note.id, note.getPointValue(), note.getStartTime(), note.getEndTime(),
+                        note.isFader());
+            }
+        }
+        return table;
+    }
+
+    void set(int lane, int index, int id, double value, double startTime, double endTime, boolean fader) {
+        this.ids[lane][index] = id;
+        this.pointValues[lane][index] = value;
+        this.startTimes[lane][index] = startTime;
+        this.endTimes[lane][index] = endTime;
+        if (fader) {
+            this.faders[lane][index >>> 6] |= 1L << index;
+        }
+    }
+
+    /**
+     * Gets the amount of notes in a lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the amount of notes in the lane
+     */
+    public int size(int lane) {
+        return this.ids[lane].length;
+    }
+
+    /**
+     * Gets the amount of notes in every lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the total amount of notes
+     */
+    @Override
+    public int size() {
+        int total = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            total += this.size(lane);
+        }
+        return total;
+    }
+
+    /**
+     * Gets the start time of a note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane of the note
+     * @param index the index of the note in its lane
+     * @return the start time of the note in ms
+     */
+    public double getStartTime(int lane, int index) {
+        return this.startTimes[lane][index];
+    }
+
+    /**
+     * Gets the end time of a note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane of the note
+     * @param index the index of the note in its lane
+     * @return the end time of the note in ms
+     */
+    public double getEndTime(int lane, int index) {
+        return this.endTimes[lane][index];
+    }
+
+    /**
+     * Gets the point value of a note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane of the note
+     * @param index the index of the note in its lane
+     * @return the point value of the note
+     */
+    public double getPointValue(int lane, int index) {
+        return this.pointValues[lane][index];
+    }
+
+    /**
+     * Gets the id of a note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane of the note
+     * @param index the index of the note in its lane
+     * @return the id of the note
+     */
+    public int getId(int lane, int index) {
+        return this.ids[lane][index];
+    }
+
+    /**
+     * Returns whether or not a note is a fader
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane of the note
+     * @param index the index of the note in its lane
+     * @return if the note is a fader
+     */
+    public boolean isFader(int lane, int index) {
+        return (this.faders[lane][index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Gets the end time of the last note in the table
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the end time of the last note in ms, or 0 if there are no notes
+     */
+    @Override
+    public double getLastEndTime() {
+        double last = 0;
+        for (int lane = 0; lane < LANES; lane++) {
+            int size = this.size(lane);
+            if (size > 0) {
+                last = Math.max(last, this.endTimes[lane][size - 1]);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Returns whether or not a lane has notes left to spawn
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return if the lane's cursor hasn't reached the end of the lane
+     */
+    @Override
+    public boolean hasNext(int lane) {
+        return this.cursor[lane] < this.size(lane);
+    }
+
+    /**
+     * Gets the start time of the next note in a lane without moving the cursor
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the start time of the next note in ms
+     */
+    @Override
+    public double peekStartTime(int lane) {
+        return this.startTimes[lane][this.cursor[lane]];
+    }
+
+    /**
+     * Moves a lane's cursor past its next note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the index of the note the cursor moved past
+     */
+    public int next(int lane) {
+        return this.cursor[lane]++;
+    }
+
+    /**
+     * Moves every lane's cursor back to the first note
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    @Override
+    public void rewind() {
+        for (int lane = 0; lane < LANES; lane++) {
+            this.cursor[lane] = 0;
+        }
+    }
+
+    /**
+     * Moves every lane's cursor to its first note that ends at or after a point
+     * in the song. The start times are binary searched, then the cursor steps back
+     * over notes that started earlier but haven't ended yet
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMs the point in the song in ms
+     */
+    @Override
+    public void seek(double timeMs) {
+        for (int lane = 0; lane < LANES; lane++) {
+            int index = firstStartingAt(this.startTimes[lane], timeMs);
+            while (index > 0 && this.endTimes[lane][index - 1] >= timeMs) {
+                index--;
+            }
+            this.cursor[lane] = index;
+        }
+    }
+
+    /**
+     * Finds the first index in a sorted array of times whose time is at or after
+     * a given time
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param times  the sorted times
+     * @param timeMs the time to search for
+     * @return the first index at or after the time, or the length of the array
+     */
+    static int firstStartingAt(double[] times, double timeMs) {
+        int low = 0;
+        int high = times.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < timeMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Creates a copy of this table for playing at a different speed. The times
+     * are scaled once, in one pass over each column, so nothing has to be scaled
+     * while the song plays
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param rate the playback rate, e.g. 1.5 for 1.5x speed
+     * @return the retimed copy
+     */
+    @Override
+    public NoteTable retimed(double rate) {
+        NoteTable table = new NoteTable(this);
+        double scale = 1.0 / rate;
+        for (int lane = 0; lane < LANES; lane++) {
+            table.startTimes[lane] = scaled(this.startTimes[lane], scale);
+            table.endTimes[lane] = scaled(this.endTimes[lane], scale);
+        }
+        return table;
+    }
+
+    private static double[] scaled(double[] times, double scale) {
+        double[] result = new double[times.length];
+        for (int i = 0; i < times.length; i++) {
+            result[i] = times[i] * scale;
+        }
+        return result;
+    }
+
+    /**
+     * Takes the next note in a lane, moving the lane's cursor past it. The note
+     * reuses a recycled one if there is one
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane the lane
+     * @return the next note
+     */
+    @Override
+    public SongNote nextNote(int lane) {
+        int index = this.next(lane);
+        return this.pool.take(this.ids[lane][index], lane, this.pointValues[lane][index],
+                this.startTimes[lane][index], this.endTimes[lane][index], this.isFader(lane, index));
+    }
+
+    /**
+     * Keeps a judged note to reuse for a later one
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note, which mustn't be used again
+     */
+    @Override
+    public void recycle(SongNote note) {
+        this.pool.give(note);
+    }
+
+    /**
+     * Does nothing, a NoteTable holds on to all of its notes
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Creates a SongNote for a note in the table
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param lane  the lane of the note
+     * @param index the index of the note in its lane
+     * @return a SongNote with the note's data
+     */
+    public SongNote toSongNote(int lane, int index) {
+        return new SongNote(this.ids[lane][index], lane, this.pointValues[lane][index],
+                this.startTimes[lane][index], this.endTimes[lane][index], this.isFader(lane, index));
+    }
+}
@@ -0,0 +1,166 @@
+package com.oaklea.urg.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Works out how late music is heard after a MediaPlayer plays it. The player
+ * taps along to a metronome, and each tap is compared to the nearest beat by a
+ * SongConductor with no offset. Taps that are way off, like the first few
+ * while the player finds the beat, are trimmed away before the rest are
+ * averaged
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class OffsetCalibration {
+
+    static final double BPM = 120;
+    static final double BEAT_SECONDS = 60 / BPM;
+    static final int BEATS = 64;
+    // how much of the taps at each end are left out of the average
+    static final double TRIM = 0.2;
+    static final int SAMPLE_RATE = 44100;
+    static final double CLICK_SECONDS = 0.03;
+
+    double[] taps;
+    int count;
+
+    /**
+     * Creates a new OffsetCalibration with no taps
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public OffsetCalibration() {
+        this.taps = new double[BEATS];
+    }
+
+    /**
+     * Adds a tap at a point in the metronome track
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param seconds the point in the track the tap happened at
+     * @return how far the tap was from the nearest beat in ms, positive if it
+     *         was late
+     */
+    public double tap(double seconds) {
+        double error = (seconds - Math.round(seconds / BEAT_SECONDS) * BEAT_SECONDS) * 1000;
+        if (this.count == this.taps.length) {
+            this.taps = Arrays.copyOf(this.taps, this.count * 2);
+        }
+        this.taps[this.count++] = error;
+        return error;
+    }
+
+    /**
+     * Gets the amount of taps so far
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of taps
+     */
+    public int getCount() {
+        return this.count;
+    }
+
+    /**
+     * Clears every tap
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void reset() {
+        this.count = 0;
+    }
+
+    /**
+     * Gets the audio offset the taps point to
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the offset in ms, or 0 if there are no taps
+     */
+    public double getOffset() {
+        return trimmedMean(Arrays.copyOf(this.taps, this.count), TRIM);
+    }
+
+    /**
+     * Averages some values without the highest and lowest of them
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param values the values, which get sorted
+     * @param trim   how much of the values to leave out at each end, from 0 to
+     *               under 0.5
+     * @return the mean of the values that are left, or 0 if there are no values
+     */
+    public static double trimmedMean(double[] values, double trim) {
+        if (values.length == 0) {
+            return 0;
+        }
+        Arrays.sort(values);
+        int cut = (int) (values.length * trim);
+        double sum = 0;
+        for (int i = cut; i < values.length - cut; i++) {
+            sum += values[i];
+        }
+        return sum / (values.length - cut * 2);
+    }
+
+    /**
+     * Writes the metronome track to a file if it isn't there yet. The first
+     * beat of each bar is higher
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the file to write the track to, as a WAV
+     */
+    public static void writeMetronome(File file) {
+        if (file.exists()) {
+            return;
+        }
+        int samples = (int) (SAMPLE_RATE * BEAT_SECONDS * BEATS);
+        int beatSamples = (int) (SAMPLE_RATE * BEAT_SECONDS);
+        int clickSamples = (int) (SAMPLE_RATE * CLICK_SECONDS);
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            // 16 bit mono PCM, which every platform JavaFX runs on can play
+            out.writeBytes("RIFF");
+            out.writeInt(Integer.reverseBytes(36 + samples * 2));
+            out.writeBytes("WAVE");
+            out.writeBytes("fmt ");
+            out.writeInt(Integer.reverseBytes(16));
+            out.writeShort(Short.reverseBytes((short) 1));
+            out.writeShort(Short.reverseBytes((short) 1));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE));
+            out.writeInt(Integer.reverseBytes(SAMPLE_RATE * 2));
+            out.writeShort(Short.reverseBytes((short) 2));
+            out.writeShort(Short.reverseBytes((short) 16));
+            out.writeBytes("data");
+            out.writeInt(Integer.reverseBytes(samples * 2));
+            for (int i = 0; i < samples; i++) {
+                int beat = i / beatSamples;
+                int offset = i % beatSamples;
+                double sample = 0;
+                if (offset < clickSamples) {
+                    double pitch = beat % 4 == 0 ? 1500 : 1000;
+                    double fade = 1 - offset / (double) clickSamples;
+                    sample = Math.sin(2 * Math.PI * pitch * offset / SAMPLE_RATE) * fade * fade;
+                }
+                out.writeShort(Short.reverseBytes((short) (sample * 0.8 * Short.MAX_VALUE)));
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.oaklea.urg.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Every press and release of a play with the point in the song it happened
+ * at, to the microsecond. Times never go backwards, so they're saved as the
+ * gap since the previous event, which usually fits in two or three bytes.
+ * Feeding the events back through a NoteJudge gives exactly the metrics of
+ * the original play, either as the song plays or all at once.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class Replay {
+
+    public static final String DIRECTORY = "replays";
+    static final String EXTENSION = ".urgr";
+    static final int MAGIC = 0x55524752; // "URGR"
+    static final int VERSION = 1;
+    static final int PRESSED = 0x4;
+
+    long[] times;
+    byte[] events;
+    int size;
+
+    /**
+     * Creates a new, empty Replay with room for a given amount of events
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param capacity the amount of events to make room for
+     */
+    public Replay(int capacity) {
+        capacity = Math.max(capacity, 16);
+        this.times = new long[capacity];
+        this.events = new byte[capacity];
+    }
+
+    /**
+     * Gets the file the replay of a score is saved to
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFolder the folder of the song the score is for
+     * @param score      the score
+     * @return the replay file
+     */
+    public static File fileFor(File songFolder, GameMetrics score) {
+        return new File(new File(songFolder, DIRECTORY), score.getPlayedAt() + EXTENSION);
+    }
+
+    /**
+     * Records a press or release of a lane
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeMicros the point in the song in microseconds, never earlier
+     *                   than the previous event
+     * @param lane       the lane
+     * @param pressed    whether the lane was pressed or released
+     */
+    public void record(long timeMicros, int lane, boolean pressed) {
+        if (this.size == this.times.length) {
+            this.times = Arrays.copyOf(this.times, this.size * 2);
+            this.events = Arrays.copyOf(this.events, this.size * 2);
+        }
+        this.times[this.size] = timeMicros;
+        this.events[this.size] = (byte) (lane | (pressed ? PRESSED : 0));
+        this.size++;
+    }
+
+    /**
+     * Gets the amount of events recorded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of events
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets the point in the song an event happened at
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the event
+     * @return the point in the song in microseconds
+     */
+    public long getTime(int index) {
+        return this.times[index];
+    }
+
+    /**
+     * Gets the lane of an event
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the event
+     * @return the lane
+     */
+    public int getLane(int index) {
+        return this.events[index] & (PRESSED - 1);
+    }
+
+    /**
+     * Returns whether an event was a press or a release
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param index the index of the event
+     * @return if the lane was pressed
+     */
+    public boolean isPress(int index) {
+        return (this.events[index] & PRESSED) != 0;
+    }
+
+    /**
+     * Plays the replay back as fast as possible, without any view. Goes through
+     * the same GameEngine as a live game, so a replay checked this way is
+     * judged exactly like it was played
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param notes      the notes of the song, rewound to the start
+     * @param difficulty the difficulty of the song
+     * @param noteCount  the amount of notes in the song
+     * @return the metrics the replay gets
+     */
+    public GameMetrics simulate(NoteSource notes, String difficulty, int noteCount) {
+        GameEngine engine = new GameEngine(notes, difficulty, noteCount, false, FixedStepClock.forChart(notes),
+                new NoteSink() {
+                });
+        engine.setPlayback(this);
+        return engine.play();
+    }
+
+    /**
+     * Saves the replay to a file
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the file to save to
+     * @throws IOException if the replay can't be saved
+     */
+    public void save(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(temp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            Varints.writeUnsigned(out, this.size);
+            for (int i = 0; i < this.size; i++) {
+                if (i == 0) {
+                    // the first event can be before the song starts
+                    Varints.writeSignedLong(out, this.times[i]);
+                } else {
+                    Varints.writeUnsignedLong(out, this.times[i] - this.times[i - 1]);
+                }
+                out.writeByte(this.events[i]);
+            }
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a replay saved by save
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the replay file
+     * @return the replay
+     * @throws IOException if the file can't be read or isn't a replay
+     */
+    public static Replay load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+                throw new IOException("Not a replay: " + file.getPath());
+            }
+            int size = Varints.readUnsigned(in);
+            Replay replay = new Replay(size);
+            long time = 0;
+            for (int i = 0; i < size; i++) {
+                time = i == 0 ? Varints.readSignedLong(in) : time + Varints.readUnsignedLong(in);
+                int event = in.readUnsignedByte();
+                replay.record(time, event & (PRESSED - 1), (event & PRESSED) != 0);
+            }
+            return replay;
+        }
+    }
+}
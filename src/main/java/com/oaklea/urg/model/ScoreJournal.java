@@ -0,0 +1,225 @@
+package com.oaklea.urg.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only file of the scores of a song folder. Every score is written
+ * as its own record, so saving a score is one small write at the end of the
+ * file no matter how many scores came before it. Each record is length
+ * prefixed and CRC checked. A record that fails its check is skipped and
+ * reading carries on with the next one, while a torn record at the end of the
+ * file (from a crash mid-write) ends the read. Either way the journal is
+ * copied aside to a .bak file before it's compacted, so nothing that couldn't
+ * be read is lost for good. Records hold scores in GameMetrics' own binary
+ * format. Scores are never deleted, so every intact record stays live and
+ * compacting only ever has damaged records or old-format ones to clean up.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class ScoreJournal {
+
+    public static final String FILE_NAME = "scores.gmj";
+    static final int MAGIC = 0x5552474A; // "URGJ"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    // length, format and crc around every payload
+    static final int RECORD_OVERHEAD = 4 + 1 + 4;
+    // records written before GameMetrics had its own binary format
+    static final byte FORMAT_SERIALIZED = 1;
+    static final byte FORMAT_CODEC = 2;
+    static final int MAX_RECORD_SIZE = 1 << 20;
+
+    File file;
+
+    /**
+     * Creates a ScoreJournal for a journal file. The file is created the first
+     * time a score is appended
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param file the journal file
+     */
+    public ScoreJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends a score to the end of the journal
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param metrics the score to append
+     * @throws IOException if the score can't be written
+     */
+    public void append(GameMetrics metrics) throws IOException {
+        this.append(Collections.singletonList(metrics));
+    }
+
+    /**
+     * Appends scores to the end of the journal in one write, then waits for them
+     * to reach the disk
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param scores the scores to append, oldest first
+     * @throws IOException if the scores can't be written
+     */
+    public synchronized void append(List<GameMetrics> scores) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            if (channel.size() == 0) {
+                channel.write(header());
+            }
+            for (GameMetrics metrics : scores) {
+                ByteBuffer record = encode(metrics);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Reads every intact score in the journal. If any record couldn't be read,
+     * the journal is backed up and then compacted so it only holds intact
+     * scores
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the scores, oldest first
+     */
+    public synchronized ArrayList<GameMetrics> readAll() {
+        ArrayList<GameMetrics> scores = new ArrayList<GameMetrics>();
+        try {
+            if (this.file.length() == 0) { // check if no scores
+                return scores;
+            }
+            byte[] bytes = Files.readAllBytes(this.file.toPath());
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a score journal: " + this.file.getPath());
+            }
+            boolean stale = false;
+            boolean damaged = false;
+            while (buffer.remaining() >= RECORD_OVERHEAD) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length < 0 || length > MAX_RECORD_SIZE || buffer.remaining() < length + 5) {
+                    buffer.position(start);
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes, start + 4, length + 1);
+                byte format = buffer.get();
+                int payload = buffer.position();
+                buffer.position(payload + length);
+                if ((int) crc.getValue() != buffer.getInt()) {
+                    // the length fits, so the next record starts right after
+                    // this one whatever happened to its bytes
+                    damaged = true;
+                    continue;
+                }
+                GameMetrics metrics = decode(format, bytes, payload, length);
+                if (metrics != null) {
+                    scores.add(metrics);
+                } else {
+                    damaged = true;
+                }
+                stale |= format == FORMAT_SERIALIZED && metrics != null;
+            }
+            if (buffer.hasRemaining() || damaged) {
+                // keep what couldn't be read, in case it can be recovered
+                Files.copy(this.file.toPath(), new File(this.file.getPath() + ".bak").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (buffer.hasRemaining() || damaged || stale) {
+                // a write was cut off part of the way through, a record was
+                // damaged, or old records should be rewritten in the current
+                // format
+                this.compact(scores);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return scores;
+    }
+
+    /**
+     * Rewrites the journal so it holds exactly the given scores
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param scores the scores to keep, oldest first
+     * @throws IOException if the journal can't be rewritten
+     */
+    public synchronized void compact(List<GameMetrics> scores) throws IOException {
+        File temp = new File(this.file.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(header());
+            for (GameMetrics metrics : scores) {
+                ByteBuffer record = encode(metrics);
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static ByteBuffer header() {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static ByteBuffer encode(GameMetrics metrics) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            metrics.write(out);
+        }
+        byte[] payload = bytes.toByteArray();
+        ByteBuffer record = ByteBuffer.allocate(payload.length + RECORD_OVERHEAD);
+        record.putInt(payload.length);
+        record.put(FORMAT_CODEC);
+        record.put(payload);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, payload.length + 1);
+        record.putInt((int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    private static GameMetrics decode(byte format, byte[] bytes, int offset, int length) {
+        try {
+            if (format == FORMAT_CODEC) {
+                return GameMetrics.read(new DataInputStream(new ByteArrayInputStream(bytes, offset, length)));
+            } else if (format == FORMAT_SERIALIZED) {
+                return LegacyMigrator.readSerialized(bytes, offset, length, GameMetrics.class);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,103 @@
+package com.oaklea.urg.model;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The scores of one song folder, shared by every difficulty in the folder. The
+ * folder's score journal is only read the first time one of its scores is
+ * needed, and the scores are split up by difficulty so each Song only sees its
+ * own.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class ScoreRepository {
+
+    static final ConcurrentHashMap<String, ScoreRepository> repositories = new ConcurrentHashMap<String, ScoreRepository>();
+    static final ScoreWriter writer = new ScoreWriter();
+
+    File folder;
+    ScoreJournal journal;
+    HashMap<String, Leaderboard> scores;
+
+    private ScoreRepository(File folder) {
+        this.folder = folder;
+        this.journal = new ScoreJournal(new File(folder, ScoreJournal.FILE_NAME));
+    }
+
+    /**
+     * Gets the ScoreRepository for a song folder, creating it if no Song in the
+     * folder has asked for it yet
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param folder the song folder
+     * @return the folder's ScoreRepository
+     */
+    public static ScoreRepository forFolder(File folder) {
+        return repositories.computeIfAbsent(folder.getAbsolutePath(), path -> new ScoreRepository(folder));
+    }
+
+    /**
+     * Gets the leaderboard for a difficulty, reading in the folder's scores if
+     * they haven't been yet
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param difficulty the difficulty
+     * @return the leaderboard for the difficulty
+     */
+    public synchronized Leaderboard getLeaderboard(String difficulty) {
+        this.load();
+        return this.scores.computeIfAbsent(difficulty, d -> new Leaderboard());
+    }
+
+    /**
+     * Adds a score and queues it to be appended to the folder's score journal
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param score the new score
+     */
+    public void addScore(GameMetrics score) {
+        this.addScore(score, null);
+    }
+
+    /**
+     * Adds a score and queues it and its replay to be saved. The score is
+     * stamped with the time it was added, which also names its replay file
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param score  the new score
+     * @param replay the replay of the score, or null if there isn't one
+     */
+    public synchronized void addScore(GameMetrics score, Replay replay) {
+        score.setPlayedAt(System.currentTimeMillis());
+        this.getLeaderboard(score.getDifficulty()).add(score);
+        writer.submit(this.journal, score, replay, replay == null ? null : Replay.fileFor(this.folder, score));
+    }
+
+    /**
+     * Writes every score that's still waiting to be saved. Blocks until they're
+     * all on disk
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public static void close() {
+        writer.close();
+    }
+
+    private void load() {
+        if (this.scores != null) {
+            return;
+        }
+        this.scores = new HashMap<String, Leaderboard>();
+        for (GameMetrics score : this.journal.readAll()) {
+            this.scores.computeIfAbsent(score.getDifficulty(), d -> new Leaderboard()).add(score);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.oaklea.urg.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Writes scores to their journals on a background thread so the game never
+ * waits on the disk. Scores are written in the order they were submitted, and
+ * every score that's waiting when the writer wakes up is written together with
+ * one flush to disk per journal. Replays are saved alongside their scores.
+ * Anything still waiting when the app closes is written before it exits.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class ScoreWriter implements Runnable {
+
+    // most scores written with one flush
+    static final int MAX_BATCH = 64;
+    static final Job STOP = new Job(null, null, null, null);
+
+    LinkedBlockingQueue<Job> queue;
+    Thread thread;
+    volatile boolean closed;
+
+    /**
+     * Creates a new ScoreWriter and starts its thread
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public ScoreWriter() {
+        this.queue = new LinkedBlockingQueue<Job>();
+        this.thread = new Thread(this, "score-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        // still write out waiting scores if the app is closed some other way
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "score-writer-shutdown"));
+    }
+
+    /**
+     * Queues a score to be appended to a journal
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param journal the journal to append to
+     * @param score   the score to append
+     */
+    public void submit(ScoreJournal journal, GameMetrics score) {
+        this.submit(journal, score, null, null);
+    }
+
+    /**
+     * Queues a score to be appended to a journal, along with its replay. The
+     * replay is saved before the score so a saved score's replay always exists
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param journal    the journal to append to
+     * @param score      the score to append
+     * @param replay     the replay of the score, or null if there isn't one
+     * @param replayFile the file to save the replay to
+     */
+    public synchronized void submit(ScoreJournal journal, GameMetrics score, Replay replay, File replayFile) {
+        Job job = new Job(journal, score, replay, replayFile);
+        if (this.closed) {
+            // too late for the thread, write it here instead
+            ArrayList<Job> batch = new ArrayList<Job>();
+            batch.add(job);
+            this.write(batch);
+            return;
+        }
+        this.queue.add(job);
+    }
+
+    /**
+     * Writes every waiting score and stops the thread. Blocks until they're all
+     * on disk
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.queue.add(STOP);
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for scores and writes them out in batches
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    @Override
+    public void run() {
+        ArrayList<Job> batch = new ArrayList<Job>();
+        boolean stopping = false;
+        while (!stopping) {
+            try {
+                batch.add(this.queue.take());
+            } catch (InterruptedException e) {
+                // only close() stops the writer, or scores would be lost
+                continue;
+            }
+            this.queue.drainTo(batch, MAX_BATCH - 1);
+            stopping = batch.remove(STOP);
+            this.write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(ArrayList<Job> batch) {
+        // group by journal, keeping the order scores were submitted in
+        LinkedHashMap<ScoreJournal, ArrayList<GameMetrics>> grouped = new LinkedHashMap<ScoreJournal, ArrayList<GameMetrics>>();
+        for (Job job : batch) {
+            if (job.replay != null) {
+                try {
+                    job.replay.save(job.replayFile);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            grouped.computeIfAbsent(job.journal, j -> new ArrayList<GameMetrics>()).add(job.score);
+        }
+        for (Map.Entry<ScoreJournal, ArrayList<GameMetrics>> entry : grouped.entrySet()) {
+            try {
+                entry.getKey().append(entry.getValue());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A score waiting to be written
+     */
+    static class Job {
+        ScoreJournal journal;
+        GameMetrics score;
+        Replay replay;
+        File replayFile;
+
+        Job(ScoreJournal journal, GameMetrics score, Replay replay, File replayFile) {
+            this.journal = journal;
+            this.score = score;
+            this.replay = replay;
+            this.replayFile = replayFile;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.oaklea.urg.model;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A loop that steps the game on its own thread at a fixed rate, 1000 times a
+ * second by default, no matter how fast or slow the screen is being drawn.
+ * Each step runs while holding the loop's lock, so other threads can safely
+ * touch what a step works on by synchronizing on the loop. Can be paused.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public abstract class SimulationLoop {
+
+    static final long DEFAULT_STEP_NANOS = 1_000_000L;
+
+    final long stepNanos;
+    Thread thread;
+    volatile boolean running;
+    boolean paused;
+
+    /**
+     * Creates a new SimulationLoop that steps 1000 times a second
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public SimulationLoop() {
+        this(DEFAULT_STEP_NANOS);
+    }
+
+    /**
+     * Creates a new SimulationLoop that steps at a given rate
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param stepNanos the time between steps in nanoseconds
+     */
+    public SimulationLoop(long stepNanos) {
+        this.stepNanos = stepNanos;
+    }
+
+    /**
+     * Starts stepping on a new thread
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public synchronized void start() {
+        if (this.running) {
+            return;
+        }
+        this.running = true;
+        this.paused = false;
+        this.thread = new Thread(this::run, "game-simulation");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MAX_PRIORITY);
+        this.thread.start();
+    }
+
+    /**
+     * Stops stepping. Once this returns no step is running and none will run
+     * again. Safe to call from inside a step
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void stop() {
+        synchronized (this) {
+            this.running = false;
+        }
+        if (this.thread != null && this.thread != Thread.currentThread()) {
+            LockSupport.unpark(this.thread);
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Pauses the loop. Once this returns no step is running until the loop is
+     * played again
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public synchronized void pause() {
+        this.paused = true;
+    }
+
+    /**
+     * Resumes the loop
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public synchronized void play() {
+        this.paused = false;
+    }
+
+    /**
+     * Returns whether or not the loop is paused
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return whether or not the loop is paused
+     */
+    public synchronized boolean isPaused() {
+        return this.paused;
+    }
+
+    private void run() {
+        long next = System.nanoTime();
+        while (this.running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            synchronized (this) {
+                if (this.running && !this.paused) {
+                    this.step();
+                }
+            }
+            // steps read the song's clock themselves, so there's nothing to gain
+            // from running missed steps back to back after a stall
+            next = Math.max(next + this.stepNanos, System.nanoTime());
+        }
+    }
+
+    /**
+     * An abstract function called once every step while the loop isn't paused,
+     * on the loop's thread
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public abstract void step();
+}
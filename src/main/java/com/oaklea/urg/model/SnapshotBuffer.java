@@ -0,0 +1,69 @@
+package com.oaklea.urg.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Three GameSnapshots passed between the simulation and the JavaFX thread.
+ * The simulation fills the back one and swaps it into the middle, and the
+ * screen swaps the middle one out to the front when it's newer than what it
+ * has. The middle index is the only thing both sides touch, so the snapshot
+ * being drawn is never the one being filled and nothing is allocated
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+class SnapshotBuffer {
+
+    // set on the middle index when it holds a snapshot the screen hasn't taken
+    static final int FRESH = 4;
+    static final int INDEX = 3;
+
+    final GameSnapshot[] snapshots;
+    final AtomicInteger middle;
+    // only touched by whoever is filling, which is always under the game's lock
+    int back;
+    // only touched by the JavaFX thread
+    int front;
+
+    /**
+     * Creates a new SnapshotBuffer of empty snapshots
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    SnapshotBuffer() {
+        this.snapshots = new GameSnapshot[] { new GameSnapshot(), new GameSnapshot(), new GameSnapshot() };
+        this.back = 0;
+        this.middle = new AtomicInteger(1);
+        this.front = 2;
+    }
+
+    /**
+     * Fills the back snapshot from the game and hands it to the screen
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param engine     the game
+     * @param position   the position of the song in seconds
+     * @param songLength the length of the song in seconds
+     */
+    void publish(GameEngine engine, double position, double songLength) {
+        this.snapshots[this.back].fill(engine, position, songLength);
+        this.back = this.middle.getAndSet(this.back | FRESH) & INDEX;
+    }
+
+    /**
+     * Gets the newest snapshot published. Only to be called from the JavaFX
+     * thread, and the snapshot is only safe to read until the next call
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the snapshot
+     */
+    GameSnapshot latest() {
+        if ((this.middle.get() & FRESH) != 0) {
+            this.front = this.middle.getAndSet(this.front) & INDEX;
+        }
+        return this.snapshots[this.front];
+    }
+}
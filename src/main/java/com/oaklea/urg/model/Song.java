@@ -2,11 +2,8 @@ package com.oaklea.urg.model;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.util.ArrayList;
 
 /**
  * A class to contain the metadata and note data for a song
@@ -16,6 +13,9 @@ import java.util.ArrayList;
  */
 public class Song {
 
+    // charts with more notes than this are streamed instead of fully loaded
+    static final int STREAMING_THRESHOLD = 20000;
+
     String title;
     String path;
     String artist;
@@ -23,107 +23,137 @@ public class Song {
     int previewTime;
     String difficulty;
     String mediaPath;
-    ArrayList<ArrayList<SongNote>> notes;
-    ArrayList<GameMetrics> scores;
+    int noteCount;
+    double duration;
+    NoteSource notes;
+    NoteSource playNotes;
+    double playRate;
+    long notesModified;
+    long notesLength;
+    ScoreRepository scores;
     File songFile;
 
     /**
-     * Creates a new Song from a songFile. Sets all data except the note data
+     * Creates a new Song from metadata that has already been read, such as from
+     * the library index. Sets all data except the note data
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param songFile the file to read in
+     * @param songFile    the song file
+     * @param title       the title of the song
+     * @param artist      the artist of the song
+     * @param difficulty  the difficulty of the song
+     * @param previewTime the preview time of the song in ms
+     * @param noteCount   the amount of notes in the song
+     * @param duration    the end time of the song's last note in ms
      */
-    public Song(File songFile) {
+    Song(File songFile, String title, String artist, String difficulty, int previewTime, int noteCount,
+            double duration) {
         this.path = songFile.getAbsolutePath();
         this.songFile = songFile;
-        BufferedReader reader;
-        try {
-            reader = new BufferedReader(new FileReader(songFile));
-            this.title = reader.readLine();
-            this.artist = reader.readLine();
-            this.difficulty = reader.readLine();
-            this.previewTime = Integer.parseInt(reader.readLine());
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        this.title = title;
+        this.artist = artist;
+        this.difficulty = difficulty;
+        this.previewTime = previewTime;
+        this.noteCount = noteCount;
+        this.duration = duration;
         this.readInScores();
     }
 
-    private void readInScores() {
-        // read in arraylist of scores
-        this.scores = new ArrayList<GameMetrics>();
-        try {
-
-            if (new File(this.getScorePath()).length() != 0) { // check if no scores
-                FileInputStream fis = new FileInputStream(this.getScorePath());
-                ObjectInputStream ois = new ObjectInputStream(fis);
-                Object obj = ois.readObject();
-                if (obj instanceof ArrayList<?>) {
-                    ArrayList<?> al = (ArrayList<?>) obj;
-                    for (int i = 0; i < al.size(); i++) {
-                        Object o = al.get(i);
-                        if (o instanceof GameMetrics) {
-                            GameMetrics gm = (GameMetrics) o;
-                            this.scores.add(gm);
-                        }
-                    }
-                }
-
-                ois.close();
-                fis.close();
+    /**
+     * Reads the four header lines of a song file: title, artist, difficulty and
+     * preview time
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param songFile the song file
+     * @return the header lines
+     * @throws IOException if the song file can't be read
+     */
+    static String[] readHeader(File songFile) throws IOException {
+        String[] header = new String[4];
+        try (BufferedReader reader = new BufferedReader(new FileReader(songFile))) {
+            for (int i = 0; i < header.length; i++) {
+                header[i] = reader.readLine();
             }
-
-        } catch (Exception e) {
-            e.printStackTrace();
         }
+        return header;
+    }
+
+    private void readInScores() {
+        // shared with the other difficulties, nothing is read until it's needed
+        this.scores = ScoreRepository.forFolder(this.songFile.getParentFile());
     }
 
     /**
-     * Reads in the notes for the song
+     * Reads in the notes for the song from its compiled chart, rebuilding the
+     * compiled chart first if the song file has changed. Very long charts are
+     * streamed rather than loaded all at once. If the notes are already loaded and
+     * the song file hasn't changed, they're just rewound
      * 
      * @author Aidan Oakley
      * @version 1.0.0
      */
     public void readInNotes() {
-        BufferedReader reader;
-        this.notes = new ArrayList<ArrayList<SongNote>>();
-        for (int i = 0; i < 4; i++) {
-            this.notes.add(new ArrayList<SongNote>());
+        this.readInNotes(1.0);
+    }
+
+    /**
+     * Reads in the notes for the song to be played at a given speed. The notes
+     * are retimed once here so the game can treat them like any other song
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param rate the playback rate, e.g. 1.5 for 1.5x speed
+     */
+    public void readInNotes(double rate) {
+        if (this.notes == null || this.notesModified != this.songFile.lastModified()
+                || this.notesLength != this.songFile.length()) {
+            this.closeNotes();
+            this.playNotes = null;
+            this.notesModified = this.songFile.lastModified();
+            this.notesLength = this.songFile.length();
+            this.notes = this.loadNotes();
+        } else if (this.playNotes != null && this.playRate == rate) {
+            this.playNotes.rewind();
+            return;
+        } else {
+            this.closeNotes();
         }
-        try {
-
-            reader = new BufferedReader(new FileReader(songFile));
-            int count = 1;
-            String line = reader.readLine();
-            while (line != null) {
-                if (count > 4) {
-                    String[] split = line.split(" ");
-                    if (split.length >= 4) {
-                        int direction = Integer.parseInt(split[0]);
-                        SongNote note = new SongNote((count - 4), direction, Integer.parseInt(split[1]),
-                                Integer.parseInt(split[2]), Integer.parseInt(split[3]), split.length == 5);
-                        this.notes.get(direction).add(note);
-                    }
-
-                }
-                count++;
-                line = reader.readLine();
+        this.playNotes = rate == 1.0 ? this.notes : this.notes.retimed(rate);
+        this.playRate = rate;
+        this.playNotes.rewind();
+    }
+
+    private NoteSource loadNotes() {
+        if (this.noteCount > STREAMING_THRESHOLD) {
+            try {
+                return new StreamingChart(CompiledChart.ensureCompiled(this.songFile));
+            } catch (IOException e) {
+                e.printStackTrace();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        }
+        return CompiledChart.load(this.songFile);
+    }
+
+    private void closeNotes() {
+        if (this.playNotes != null) {
+            this.playNotes.close();
+        }
+        if (this.notes != null) {
+            this.notes.close();
         }
     }
 
     /**
-     * Gets the scores for this song
+     * Gets the leaderboard for this song
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @return the scores for this song
+     * @return the scores for this song, ranked by points
      */
-    public ArrayList<GameMetrics> getScores() {
-        return this.scores;
+    public Leaderboard getLeaderboard() {
+        return this.scores.getLeaderboard(this.difficulty);
     }
 
     /**
@@ -131,10 +161,10 @@ public class Song {
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @return the notes for this song
+     * @return the notes for this song, timed for the rate they were read in at
      */
-    public ArrayList<ArrayList<SongNote>> getNotes() {
-        return this.notes;
+    public NoteSource getNotes() {
+        return this.playNotes;
     }
 
     /**
@@ -230,7 +260,35 @@ public class Song {
     }
 
     /**
-     * Gets the path for the score file of this song
+     * Gets the amount of notes in this song
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of notes in this song
+     */
+    public int getNoteCount() {
+        if (this.notes != null) {
+            return this.notes.size();
+        }
+        return this.noteCount;
+    }
+
+    /**
+     * Gets the duration of this song's chart
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the end time of the last note in ms
+     */
+    public double getDuration() {
+        if (this.notes != null) {
+            return this.notes.getLastEndTime();
+        }
+        return this.duration;
+    }
+
+    /**
+     * Gets the path for the score journal of this song
      * 
      * @author Aidan Oakley
      * @version 1.0.0
@@ -238,17 +296,41 @@ public class Song {
      */
     public String getScorePath() {
         String path = this.songFile.getParentFile().getPath();
-        return path + "/scores.gm/";
+        return path + "/" + ScoreJournal.FILE_NAME;
     }
 
     /**
-     * Adds a score to this song
+     * Adds a score to this song and saves it
      * 
      * @author Aidan Oakley
      * @version 1.0.0
      * @param score new score to add
      */
     public void addScore(GameMetrics score) {
-        this.scores.add(score);
+        this.scores.addScore(score);
+    }
+
+    /**
+     * Adds a score to this song and saves it along with its replay
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param score  new score to add
+     * @param replay the replay of the score
+     */
+    public void addScore(GameMetrics score, Replay replay) {
+        this.scores.addScore(score, replay);
+    }
+
+    /**
+     * Gets the replay file of one of this song's scores
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param score the score
+     * @return the replay file, which doesn't exist if the score has no replay
+     */
+    public File getReplayFile(GameMetrics score) {
+        return Replay.fileFor(this.songFile.getParentFile(), score);
     }
 }
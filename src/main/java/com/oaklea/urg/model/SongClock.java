@@ -0,0 +1,31 @@
+package com.oaklea.urg.model;
+
+/**
+ * A clock telling the game where it is in the song. The game only ever reads
+ * the song's position through a SongClock, so it can follow a playing song or
+ * be run through a chart with no audio at all
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public interface SongClock {
+
+    /**
+     * Moves the clock to the current point in the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return 0 if the song hasn't ended, 1 otherwise
+     */
+    int update();
+
+    /**
+     * Gets the position the song was at at a given instant
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param nanoTime the instant, from System.nanoTime
+     * @return the position in seconds
+     */
+    double getPosition(long nanoTime);
+}
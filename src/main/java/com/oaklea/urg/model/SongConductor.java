@@ -1,103 +1,298 @@
 package com.oaklea.urg.model;
 
 import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
 
 /**
  * Watches a MediaPlayer object and reconciles its current position with an
- * internal clock
- * 
+ * internal clock. When the song is played faster or slower, every time the
+ * conductor hands out is in real time, so a 60 second song at 1.5x is 40
+ * seconds long.
+ *
+ * The player only reports its time every so often, and roughly at that. Every
+ * new report is fed into a fit of the song's position as an offset plus a rate
+ * against the system clock, weighted towards recent reports. The internal
+ * clock runs at the fitted rate and is steered gently towards the fit, so it
+ * moves smoothly and never goes backwards unless the song jumps. Each update
+ * costs the same no matter how long the song has played.
+ *
+ * Speakers play the song some time after the player reports it, so the clock
+ * can be given an audio offset. The clock then runs that far behind the
+ * player's reports, and the times it hands out are when the song is heard
+ * rather than when it was played
+ *
  * @author Aidan Oakley
  * @version 1.0.0
  */
-public class SongConductor {
+public class SongConductor implements SongClock {
+
+    // how much each older report counts compared to the one after it
+    static final double DECAY = 0.995;
+    // how fast the clock closes the gap to the fit, per second
+    static final double GAIN = 2.0;
+    // the most the clock may run faster or slower than the fit while catching up
+    static final double MAX_SLEW = 0.05;
+    // further than this from the fit and the clock jumps instead of catching up
+    static final double SNAP_SECONDS = 0.1;
+    // a fitted rate outside of this is a bad fit, not a real clock
+    static final double MAX_DRIFT = 0.05;
 
     double position;
     double previousPosition;
     double previousFrameTime;
+    double rate;
+    boolean paused;
+    double length;
+    // how far the clock runs behind the player, in seconds
+    double offset;
     MediaPlayer player;
 
+    // weighted sums of the reports since the clock last jumped, with times
+    // relative to fitStart
+    double fitStart;
+    double weights;
+    double sumT;
+    double sumY;
+    double sumTT;
+    double sumTY;
+    double slope;
+    double intercept;
+    int samples;
+    double jitterSquared;
+
     /**
      * Creates a new SongConductor for a player
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @param player the player to watch
      */
     public SongConductor(MediaPlayer player) {
+        this(player, 1.0);
+    }
+
+    /**
+     * Creates a new SongConductor for a player that plays at a given speed
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param player the player to watch
+     * @param rate   the playback rate, e.g. 1.5 for 1.5x speed
+     */
+    public SongConductor(MediaPlayer player, double rate) {
         this.position = 0;
         this.player = player;
+        this.rate = rate;
+        this.player.setRate(rate);
         this.previousPosition = 0;
         this.previousFrameTime = 0;
+        this.length = Double.NaN;
+        this.resetFit(0);
     }
 
     /**
-     * Returns the length of the song
-     * 
+     * Returns the playback rate
+     *
      * @author Aidan Oakley
      * @version 1.0.0
-     * @return the length of the song in seconds
+     * @return the playback rate
+     */
+    public double getRate() {
+        return this.rate;
+    }
+
+    /**
+     * Returns the length of the song. The player's duration is only looked up
+     * until it's known
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the length of the song in seconds, NaN if the player isn't ready
      */
     public double songLength() {
-        return this.player.totalDurationProperty().get().toSeconds();
+        if (Double.isNaN(this.length)) {
+            double seconds = this.player.totalDurationProperty().get().toSeconds() / this.rate;
+            if (seconds > 0 && !Double.isInfinite(seconds)) {
+                this.length = seconds;
+            }
+            return seconds;
+        }
+        return this.length;
     }
 
     /**
      * Updates this objects reference to the song's position
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @return 0 if the song hasn't ended, 1 otherwise
      */
+    @Override
     public int update() {
-        this.position += System.nanoTime() / 1000000000.0 - this.previousFrameTime;
-        this.previousFrameTime = System.nanoTime() / 1000000000.0;
+        double now = System.nanoTime() / 1000000000.0;
+        double elapsed = now - this.previousFrameTime;
+        this.previousFrameTime = now;
+        if (this.paused) {
+            return 0;
+        }
+
+        double reported = this.player.getCurrentTime().toSeconds();
+        if (reported != this.previousPosition) {
+            this.previousPosition = reported;
+            this.addSample(now, reported / this.rate - this.offset);
+        }
+
+        if (this.samples == 0) {
+            // nothing to go on yet, so just keep time
+            this.position += elapsed;
+        } else {
+            double error = this.fitted(now) - this.position;
+            if (Math.abs(error) > SNAP_SECONDS) {
+                this.position += error;
+            } else {
+                double slew = Math.max(-MAX_SLEW, Math.min(MAX_SLEW, error * GAIN));
+                this.position += elapsed * (this.slope + slew);
+            }
+        }
 
-        if (Math.abs(this.position - this.songLength()) < 0.05) {
+        double length = this.songLength();
+        if (length - this.position < 0.05) {
             return 1; // song is over
-        } else if (this.player.getCurrentTime().toSeconds() != previousPosition) {
-            this.position = (this.position + this.player.getCurrentTime().toSeconds()) / 2;
-            this.previousPosition = this.player.getCurrentTime().toSeconds();
         }
         return 0;
     }
 
+    private void addSample(double time, double songTime) {
+        double t = time - this.fitStart;
+        if (this.samples >= 2) {
+            double residual = songTime - this.fitted(time);
+            this.jitterSquared = DECAY * this.jitterSquared + (1 - DECAY) * residual * residual;
+        }
+        this.weights = DECAY * this.weights + 1;
+        this.sumT = DECAY * this.sumT + t;
+        this.sumY = DECAY * this.sumY + songTime;
+        this.sumTT = DECAY * this.sumTT + t * t;
+        this.sumTY = DECAY * this.sumTY + t * songTime;
+        this.samples++;
+
+        double spread = this.weights * this.sumTT - this.sumT * this.sumT;
+        double slope = 1;
+        if (this.samples >= 2 && spread > 1e-9) {
+            slope = (this.weights * this.sumTY - this.sumT * this.sumY) / spread;
+            slope = Math.max(1 - MAX_DRIFT, Math.min(1 + MAX_DRIFT, slope));
+        }
+        this.slope = slope;
+        this.intercept = (this.sumY - slope * this.sumT) / this.weights;
+    }
+
+    private double fitted(double time) {
+        return this.intercept + this.slope * (time - this.fitStart);
+    }
+
+    private void resetFit(double time) {
+        this.fitStart = time;
+        this.weights = 0;
+        this.sumT = 0;
+        this.sumY = 0;
+        this.sumTT = 0;
+        this.sumTY = 0;
+        this.slope = 1;
+        this.intercept = 0;
+        this.samples = 0;
+    }
+
     /**
      * Pauses the player
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      */
     public void pause() {
+        this.paused = true;
         this.player.pause();
     }
 
     /**
      * Unpauses the player
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      */
     public void unpause() {
+        this.paused = false;
         this.previousFrameTime = System.nanoTime() / 1000000000.0;
+        // the reports from before the pause are off by however long it lasted
+        this.resetFit(this.previousFrameTime);
         this.player.play();
     }
 
     /**
      * Starts the player watches it
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      */
     public void start() {
         this.player.stop();
+        this.paused = false;
+        this.position = -this.offset;
         this.previousFrameTime = System.nanoTime() / 1000000000.0;
+        this.resetFit(this.previousFrameTime);
 
         this.player.play();
     }
 
+    /**
+     * Moves the player and the internal clock to a point in the song
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param seconds the point in the song in seconds
+     */
+    public void seek(double seconds) {
+        // the player has to be ahead by the offset for the song to be heard at
+        // that point
+        Duration target = Duration.seconds(Math.max(0, seconds + this.offset) * this.rate);
+        if (this.player.getStatus() == MediaPlayer.Status.UNKNOWN) {
+            // the player can't seek until it's ready
+            this.player.setOnReady(() -> this.player.seek(target));
+        } else {
+            this.player.seek(target);
+        }
+        this.position = seconds;
+        // ignore the player's time until it reports one from after the seek
+        this.previousPosition = this.player.getCurrentTime().toSeconds();
+        this.previousFrameTime = System.nanoTime() / 1000000000.0;
+        this.resetFit(this.previousFrameTime);
+    }
+
+    /**
+     * Sets how late the song is heard after the player plays it. Must be set
+     * before the song starts
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param offsetMs the audio offset in ms, negative if the song is heard
+     *                 early
+     */
+    public void setOffset(double offsetMs) {
+        this.offset = offsetMs / 1000;
+    }
+
+    /**
+     * Gets how late the song is heard after the player plays it
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the audio offset in ms
+     */
+    public double getOffset() {
+        return this.offset * 1000;
+    }
+
     /**
      * Gets the current position
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @return the current position in ms
@@ -106,4 +301,57 @@ public class SongConductor {
         return this.position;
     }
 
+    /**
+     * Gets the position the song was at at a given instant, carrying the clock
+     * on from the last update. Lets a key press be judged at the moment it
+     * happened instead of at the last update
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param nanoTime the instant, from System.nanoTime
+     * @return the position in seconds
+     */
+    @Override
+    public double getPosition(long nanoTime) {
+        if (this.paused) {
+            return this.position;
+        }
+        return this.position + (nanoTime / 1000000000.0 - this.previousFrameTime) * this.slope;
+    }
+
+    /**
+     * Gets how far the player's reports stray from the fitted clock, as a
+     * standard deviation weighted towards recent reports
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the jitter in ms
+     */
+    public double getJitter() {
+        return Math.sqrt(this.jitterSquared) * 1000;
+    }
+
+    /**
+     * Gets how much faster the player runs than the system clock, according to
+     * the fit
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the drift in parts per million, negative if the player is slower
+     */
+    public double getDrift() {
+        return (this.slope - 1) * 1000000;
+    }
+
+    /**
+     * Gets how far the clock currently is from the fit
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the gap in ms, positive if the clock is behind the fit
+     */
+    public double getFitError() {
+        return this.samples == 0 ? 0 : (this.fitted(this.previousFrameTime) - this.position) * 1000;
+    }
+
 }
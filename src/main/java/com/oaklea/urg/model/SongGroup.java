@@ -51,6 +51,17 @@ public class SongGroup {
         this.artist = artist;
     }
 
+    /**
+     * Sets the background image path of this group
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param imagePath the image path, or null if the group has no image
+     */
+    public void setImagePath(String imagePath) {
+        this.imagePath = imagePath;
+    }
+
     /**
      * Gets the songs belonging to this group
      * 
@@ -28,6 +28,23 @@ public class SongNote {
      * @param fader     whether this note "fades" as it goes down the screen
      */
     public SongNote(int id, int lane, double value, double startTime, double endTime, boolean fader) {
+        this.set(id, lane, value, startTime, endTime, fader);
+    }
+
+    /**
+     * Turns this note into another one, so a note that's done with can be
+     * reused instead of making a new one
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param id        the id of the note
+     * @param lane      the lane the note will reside in
+     * @param value     the point value of the note
+     * @param startTime the start time of the note's appearance
+     * @param endTime   the end time of the note's appearance
+     * @param fader     whether the note "fades" as it goes down the screen
+     */
+    void set(int id, int lane, double value, double startTime, double endTime, boolean fader) {
         this.id = id;
         this.lane = lane;
         this.pointValue = value;
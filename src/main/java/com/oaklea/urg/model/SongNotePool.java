@@ -0,0 +1,64 @@
+package com.oaklea.urg.model;
+
+import java.util.Arrays;
+
+/**
+ * A stack of SongNotes that are done with, for a NoteSource to hand out again.
+ * Once as many notes have come back as are ever held at once, taking a note
+ * never allocates
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+class SongNotePool {
+
+    SongNote[] free;
+    int size;
+
+    /**
+     * Creates a new, empty SongNotePool
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    SongNotePool() {
+        this.free = new SongNote[64];
+    }
+
+    /**
+     * Gets a note with the given parameters, reusing one if there are any free
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param id        the id of the note
+     * @param lane      the lane of the note
+     * @param value     the point value of the note
+     * @param startTime the start time of the note
+     * @param endTime   the end time of the note
+     * @param fader     whether the note fades
+     * @return the note
+     */
+    SongNote take(int id, int lane, double value, double startTime, double endTime, boolean fader) {
+        if (this.size == 0) {
+            return new SongNote(id, lane, value, startTime, endTime, fader);
+        }
+        SongNote note = this.free[--this.size];
+        this.free[this.size] = null;
+        note.set(id, lane, value, startTime, endTime, fader);
+        return note;
+    }
+
+    /**
+     * Gives a note back to be reused
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param note the note
+     */
+    void give(SongNote note) {
+        if (this.size == this.free.length) {
+            this.free = Arrays.copyOf(this.free, this.size * 2);
+        }
+        this.free[this.size++] = note;
+    }
+}
@@ -0,0 +1,289 @@
+package com.oaklea.urg.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A NoteSource that streams the notes of a compiled chart instead of loading
+ * them all at once. A background reader decodes each lane into a small ring of
+ * notes ahead of the game, and a slot is reused as soon as its note is taken,
+ * so memory stays the same no matter how long the chart is. Used for charts too
+ * long to comfortably hold in a NoteTable. The reader starts on the first
+ * rewind or seek.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class StreamingChart implements NoteSource {
+
+    // notes decoded ahead in each lane, must be a power of two
+    static final int WINDOW = 256;
+    static final long IDLE_NANOS = 500_000;
+    // the longest the game waits on the reader before trying again next step
+    static final long MAX_WAIT_NANOS = 250_000;
+
+    File compiled;
+    double rate;
+    MappedByteBuffer buffer;
+    int[] counts;
+    int[] offsets;
+    Window[] windows;
+    volatile boolean running;
+    Thread reader;
+    // the thread waiting on the reader for a note, if any
+    volatile Thread waiting;
+    SongNotePool pool;
+
+    /**
+     * Creates a new StreamingChart over a compiled chart
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param compiled the compiled chart file
+     * @throws IOException if the compiled chart can't be read
+     */
+    public StreamingChart(File compiled) throws IOException {
+        this(compiled, 1.0);
+    }
+
+    /**
+     * Creates a new StreamingChart over a compiled chart, played at a given
+     * speed. Note times are divided by the rate as they're decoded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param compiled the compiled chart file
+     * @param rate     the playback rate, e.g. 1.5 for 1.5x speed
+     * @throws IOException if the compiled chart can't be read
+     */
+    public StreamingChart(File compiled, double rate) throws IOException {
+        this.compiled = compiled;
+        this.rate = rate;
+        try (FileChannel channel = FileChannel.open(compiled.toPath(), StandardOpenOption.READ)) {
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (this.buffer.getInt(0) != CompiledChart.MAGIC || this.buffer.getShort(4) != CompiledChart.VERSION
+                || this.buffer.getShort(6) != CompiledChart.LANES) {
+            throw new IOException("Not a compiled chart: " + compiled.getPath());
+        }
+        this.counts = new int[CompiledChart.LANES];
+        this.offsets = new int[CompiledChart.LANES];
+        this.windows = new Window[CompiledChart.LANES];
+        this.pool = new SongNotePool();
+        int offset = CompiledChart.HEADER_SIZE;
+        for (int lane = 0; lane < CompiledChart.LANES; lane++) {
+            this.counts[lane] = this.buffer.getInt(CompiledChart.HEADER_SIZE - (CompiledChart.LANES - lane) * 4);
+            this.offsets[lane] = offset;
+            offset += this.counts[lane] * CompiledChart.RECORD_SIZE;
+            this.windows[lane] = new Window();
+        }
+        if (offset > this.buffer.capacity()) {
+            throw new IOException("Truncated compiled chart: " + compiled.getPath());
+        }
+    }
+
+    private void startReader() {
+        this.running = true;
+        this.reader = new Thread(this::read, "chart-reader");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void read() {
+        while (this.running) {
+            boolean done = true;
+            boolean decodedAny = false;
+            for (int lane = 0; lane < CompiledChart.LANES; lane++) {
+                Window window = this.windows[lane];
+                if (window.decoded < this.counts[lane]) {
+                    done = false;
+                }
+                long tail = window.tail.get();
+                while (window.decoded < this.counts[lane] && tail - window.head.get() < WINDOW) {
+                    window.decode(this.buffer, this.recordOffset(lane, window.decoded), (int) (tail & (WINDOW - 1)),
+                            this.rate);
+                    window.decoded++;
+                    tail++;
+                    // publish the note only once it's fully written
+                    window.tail.lazySet(tail);
+                    decodedAny = true;
+                }
+            }
+            Thread waiting = this.waiting;
+            if (decodedAny && waiting != null) {
+                LockSupport.unpark(waiting);
+            }
+            if (done) {
+                return;
+            }
+            if (!decodedAny) {
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext(int lane) {
+        Window window = this.windows[lane];
+        long head = window.head.get();
+        long deadline = 0;
+        while (head == window.tail.get()) {
+            if (window.start + head >= this.counts[lane] || !this.running) {
+                return false;
+            }
+            // the reader is behind. This runs inside a step, so rather than spin
+            // and hold up the game, sleep until the reader publishes a note, and
+            // if it takes too long let the next step ask again
+            long now = System.nanoTime();
+            if (deadline == 0) {
+                deadline = now + MAX_WAIT_NANOS;
+            } else if (now >= deadline) {
+                return false;
+            }
+            this.waiting = Thread.currentThread();
+            if (head == window.tail.get()) {
+                LockSupport.parkNanos(deadline - now);
+            }
+            this.waiting = null;
+        }
+        return true;
+    }
+
+    @Override
+    public double peekStartTime(int lane) {
+        Window window = this.windows[lane];
+        return window.startTimes[(int) (window.head.get() & (WINDOW - 1))];
+    }
+
+    @Override
+    public SongNote nextNote(int lane) {
+        Window window = this.windows[lane];
+        long head = window.head.get();
+        int slot = (int) (head & (WINDOW - 1));
+        SongNote note = this.pool.take(window.ids[slot], lane, window.pointValues[slot], window.startTimes[slot],
+                window.endTimes[slot], window.faders[slot]);
+        // hand the slot back to the reader
+        window.head.lazySet(head + 1);
+        return note;
+    }
+
+    @Override
+    public void recycle(SongNote note) {
+        this.pool.give(note);
+    }
+
+    @Override
+    public StreamingChart retimed(double rate) {
+        try {
+            return new StreamingChart(this.compiled, this.rate * rate);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void rewind() {
+        this.restartAt(new int[CompiledChart.LANES]);
+    }
+
+    @Override
+    public void seek(double timeMs) {
+        // the records hold times at normal speed
+        timeMs *= this.rate;
+        int[] starts = new int[CompiledChart.LANES];
+        for (int lane = 0; lane < CompiledChart.LANES; lane++) {
+            // binary search the fixed-width records of the lane in place
+            int low = 0;
+            int high = this.counts[lane];
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.buffer.getInt(this.recordOffset(lane, mid) + 8) < timeMs) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            while (low > 0 && this.buffer.getInt(this.recordOffset(lane, low - 1) + 12) >= timeMs) {
+                low--;
+            }
+            starts[lane] = low;
+        }
+        this.restartAt(starts);
+    }
+
+    private int recordOffset(int lane, int index) {
+        return this.offsets[lane] + index * CompiledChart.RECORD_SIZE;
+    }
+
+    private void restartAt(int[] starts) {
+        this.close();
+        for (int lane = 0; lane < CompiledChart.LANES; lane++) {
+            this.windows[lane] = new Window();
+            this.windows[lane].start = starts[lane];
+            this.windows[lane].decoded = starts[lane];
+        }
+        this.startReader();
+    }
+
+    @Override
+    public void close() {
+        this.running = false;
+        if (this.reader != null) {
+            try {
+                this.reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.reader = null;
+        }
+    }
+
+    @Override
+    public int size() {
+        int total = 0;
+        for (int lane = 0; lane < CompiledChart.LANES; lane++) {
+            total += this.counts[lane];
+        }
+        return total;
+    }
+
+    @Override
+    public double getLastEndTime() {
+        double last = 0;
+        for (int lane = 0; lane < CompiledChart.LANES; lane++) {
+            if (this.counts[lane] > 0) {
+                last = Math.max(last, this.buffer.getInt(this.recordOffset(lane, this.counts[lane] - 1) + 12));
+            }
+        }
+        return last / this.rate;
+    }
+
+    /**
+     * The decoded notes of one lane that haven't been taken yet. Only the reader
+     * moves the tail and only the game moves the head
+     */
+    static class Window {
+        double[] startTimes = new double[WINDOW];
+        double[] endTimes = new double[WINDOW];
+        double[] pointValues = new double[WINDOW];
+        int[] ids = new int[WINDOW];
+        boolean[] faders = new boolean[WINDOW];
+        AtomicLong head = new AtomicLong();
+        AtomicLong tail = new AtomicLong();
+        int start;
+        int decoded;
+
+        void decode(MappedByteBuffer buffer, int record, int slot, double rate) {
+            this.ids[slot] = buffer.getInt(record);
+            this.pointValues[slot] = buffer.getInt(record + 4);
+            this.startTimes[slot] = buffer.getInt(record + 8) / rate;
+            this.endTimes[slot] = buffer.getInt(record + 12) / rate;
+            this.faders[slot] = (buffer.getInt(record + 16) & CompiledChart.FLAG_FADER) != 0;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.oaklea.urg.model;
+
+/**
+ * Counts durations in buckets that are one ns wide for the shortest durations
+ * and grow with the duration after that, so every duration from a ns up to
+ * minutes is kept to within about 3%. All the buckets are made up front and
+ * recording a duration is a couple of bit operations, so timing even the
+ * smallest parts of a frame costs next to nothing. Only one thread may record
+ * into a histogram
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class TimingHistogram {
+
+    // durations under 64 ns get a bucket each, every doubling after that is
+    // split into 32 buckets
+    static final int LINEAR = 64;
+    static final int PER_DOUBLING = 32;
+    static final int BUCKETS = (64 - 6) * PER_DOUBLING + LINEAR;
+
+    long[] counts;
+    long count;
+    long total;
+    long max;
+
+    /**
+     * Creates a new, empty TimingHistogram
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public TimingHistogram() {
+        this.counts = new long[BUCKETS];
+    }
+
+    /**
+     * Records a duration
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param nanos the duration in ns
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        this.counts[bucketOf(nanos)]++;
+        this.count++;
+        this.total += nanos;
+        if (nanos > this.max) {
+            this.max = nanos;
+        }
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < LINEAR) {
+            return (int) nanos;
+        }
+        // shift the duration down until it's between 32 and 63
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - 5;
+        return shift * PER_DOUBLING + (int) (nanos >>> shift);
+    }
+
+    private static long highestIn(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int shift = bucket / PER_DOUBLING - 1;
+        long top = bucket - shift * PER_DOUBLING;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Gets the duration a percentage of the recorded durations are at or
+     * under
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param percent the percentage, e.g. 99 for the 99th percentile
+     * @return the duration in ns, 0 if nothing was recorded
+     */
+    public long getPercentile(double percent) {
+        if (this.count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * this.count));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += this.counts[bucket];
+            if (seen >= rank) {
+                return Math.min(highestIn(bucket), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Gets the amount of durations recorded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the amount of durations
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Gets the longest duration recorded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the duration in ns
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Gets the average of the durations recorded
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the mean duration in ns
+     */
+    public double getMean() {
+        return this.count == 0 ? 0 : (double) this.total / this.count;
+    }
+}
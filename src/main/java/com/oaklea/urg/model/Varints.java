@@ -0,0 +1,150 @@
+package com.oaklea.urg.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Reads and writes whole numbers in as few bytes as they need, seven bits to a
+ * byte. Small numbers like note counts take one or two bytes instead of four.
+ * Signed numbers are zigzag encoded first so small negative numbers stay small
+ * too.
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class Varints {
+
+    private Varints() {
+    }
+
+    /**
+     * Writes a number that's never negative
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param out   where to write to
+     * @param value the number
+     * @throws IOException if writing fails
+     */
+    public static void writeUnsigned(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Reads a number written by writeUnsigned
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param in where to read from
+     * @return the number
+     * @throws IOException if reading fails or the number is too long
+     */
+    public static int readUnsigned(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes a number that may be negative
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param out   where to write to
+     * @param value the number
+     * @throws IOException if writing fails
+     */
+    public static void writeSigned(DataOutput out, int value) throws IOException {
+        writeUnsigned(out, (value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Reads a number written by writeSigned
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param in where to read from
+     * @return the number
+     * @throws IOException if reading fails or the number is too long
+     */
+    public static int readSigned(DataInput in) throws IOException {
+        int value = readUnsigned(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Writes a long that's never negative
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param out   where to write to
+     * @param value the number
+     * @throws IOException if writing fails
+     */
+    public static void writeUnsignedLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a long written by writeUnsignedLong
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param in where to read from
+     * @return the number
+     * @throws IOException if reading fails or the number is too long
+     */
+    public static long readUnsignedLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 70; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Writes a long that may be negative
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param out   where to write to
+     * @param value the number
+     * @throws IOException if writing fails
+     */
+    public static void writeSignedLong(DataOutput out, long value) throws IOException {
+        writeUnsignedLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Reads a long written by writeSignedLong
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param in where to read from
+     * @return the number
+     * @throws IOException if reading fails or the number is too long
+     */
+    public static long readSignedLong(DataInput in) throws IOException {
+        long value = readUnsignedLong(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
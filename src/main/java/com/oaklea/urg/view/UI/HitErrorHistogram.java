@@ -0,0 +1,67 @@
+package com.oaklea.urg.view.UI;
+
+import com.oaklea.urg.model.HitTimeline;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * A UI Element showing how early or late the notes of a play were hit, as a
+ * histogram of timing errors. Early hits are on the left, late hits are on the
+ * right
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class HitErrorHistogram extends Canvas {
+
+    static final int BINS = 51;
+    // widest hit window, anything further off is a miss
+    static final double RANGE_MS = 127;
+
+    /**
+     * Creates a HitErrorHistogram for a play
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param timeline the timing of the notes of the play
+     * @param width    the width of the histogram
+     * @param height   the height of the histogram
+     */
+    public HitErrorHistogram(HitTimeline timeline, double width, double height) {
+        super(width, height);
+        this.draw(timeline.histogram(BINS, RANGE_MS));
+    }
+
+    private void draw(int[] counts) {
+        GraphicsContext gc = this.getGraphicsContext2D();
+        double width = this.getWidth();
+        double height = this.getHeight();
+        int most = 1;
+        for (int count : counts) {
+            most = Math.max(most, count);
+        }
+        double barWidth = width / counts.length;
+        for (int i = 0; i < counts.length; i++) {
+            double errorMs = Math.abs((i + 0.5) * RANGE_MS * 2 / counts.length - RANGE_MS);
+            gc.setFill(colorFor(errorMs));
+            double barHeight = (height - 10) * counts[i] / most;
+            gc.fillRect(i * barWidth + 1, height - barHeight, barWidth - 2, barHeight);
+        }
+        // mark a perfectly timed hit
+        gc.setStroke(Color.WHITE);
+        gc.strokeLine(width / 2, 0, width / 2, height);
+    }
+
+    private static Color colorFor(double errorMs) {
+        if (errorMs <= 18) {
+            return Color.GOLD;
+        } else if (errorMs <= 43) {
+            return Color.LIMEGREEN;
+        } else if (errorMs <= 76) {
+            return Color.DEEPSKYBLUE;
+        }
+        return Color.ORANGERED;
+    }
+}
@@ -41,7 +41,12 @@ public class SongGroupItem extends VBox {
         this.songInfoPane = new VBox();
         this.songGroupPane = new HBox(10);
         String bgpath = group.getImagePath();
-        ImageView view = new ImageView(new Image(new File(bgpath).toURI().toString(), 100, 100, false, false));
+        ImageView view = new ImageView();
+        view.setFitWidth(100);
+        view.setFitHeight(100);
+        if (bgpath != null) {
+            view.setImage(new Image(new File(bgpath).toURI().toString(), 100, 100, false, false));
+        }
         Text groupLabel = new Text(this.songGroup.getTitle());
         Text groupArtistLabel = new Text(this.songGroup.getArtist());
         groupLabel.setFill(Color.WHITE);
@@ -108,6 +113,17 @@ public class SongGroupItem extends VBox {
         this.expanded = true;
     }
 
+    /**
+     * Gets the SongGroup this item displays
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the SongGroup
+     */
+    public SongGroup getSongGroup() {
+        return this.songGroup;
+    }
+
     /**
      * Gets the SongItems
      * 
@@ -41,4 +41,15 @@ public class StyleText extends VBox {
         this.label.setFill(color);
     }
 
+    /**
+     * Sets the string this object displays
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param text the string to display
+     */
+    public void setText(String text) {
+        this.label.setText(text);
+    }
+
 }
@@ -0,0 +1,217 @@
+package com.oaklea.urg.view.scenes;
+
+import java.io.File;
+
+import com.oaklea.urg.model.GameLoop;
+import com.oaklea.urg.model.GlobalSettings;
+import com.oaklea.urg.model.OffsetCalibration;
+import com.oaklea.urg.model.SongConductor;
+import com.oaklea.urg.view.UI.StyleText;
+
+import javafx.event.EventHandler;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.scene.paint.Color;
+
+/**
+ * The screen for calibrating the audio offset. Plays a metronome and has the
+ * player tap along to it with space, then works out how late the music is
+ * heard from the taps
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+public class CalibrationScreen extends Scene {
+
+    static final String METRONOME_PATH = "./bin/misc/metronome.wav";
+
+    BorderPane mainPane;
+    HBox topPane;
+    VBox centerPane;
+    StyleText backButton;
+    HBox bottomPane;
+    StyleText instructionText;
+    StyleText tapText;
+    StyleText offsetText;
+    StyleText resetText;
+    StyleText applyText;
+    GlobalSettings settings;
+    OffsetCalibration calibration;
+    MediaPlayer metronome;
+    SongConductor conductor;
+    GameLoop loop;
+
+    /**
+     * Creates a new CalibrationScreen with global settings
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param pane
+     * @param settings
+     */
+    public CalibrationScreen(BorderPane pane, GlobalSettings settings) {
+        super(pane);
+        this.mainPane = pane;
+        this.settings = settings;
+        this.calibration = new OffsetCalibration();
+        initPane();
+        setupKeyListener();
+    }
+
+    private void initPane() {
+        // set up top pane
+        this.topPane = new HBox();
+        this.topPane.setPrefSize(1920, 70);
+        this.backButton = new StyleText("< Back");
+        this.topPane.getChildren().add(this.backButton);
+        this.topPane.setPadding(new Insets(0, 0, 0, 20));
+
+        // set up center pane
+        this.centerPane = new VBox(20);
+        this.centerPane.setAlignment(Pos.CENTER);
+        this.centerPane.setPadding(new Insets(0, 600, 0, 600));
+        this.instructionText = new StyleText("Press space on every beat you hear");
+        this.tapText = new StyleText("");
+        this.offsetText = new StyleText("");
+        this.resetText = new StyleText("Reset");
+        this.resetText.setOnMouseClicked(e -> {
+            this.calibration.reset();
+            this.updateText(0);
+        });
+        this.applyText = new StyleText("Apply");
+        this.centerPane.getChildren().addAll(this.instructionText, this.tapText, this.offsetText, this.resetText,
+                this.applyText);
+        this.updateText(0);
+
+        // set up bottom pane
+        this.bottomPane = new HBox();
+        this.bottomPane.setPrefSize(1920, 70);
+
+        this.addStyle();
+        this.mainPane.setTop(this.topPane);
+        this.mainPane.setCenter(this.centerPane);
+        this.mainPane.setBottom(this.bottomPane);
+    }
+
+    private void addStyle() {
+        this.getStylesheets().add("UIStylesheet.css");
+        this.backButton.setTextStyle("back-button", Color.WHITE);
+        this.instructionText.setTextStyle("settings-field", Color.WHITE);
+        this.tapText.setTextStyle("settings-field", Color.WHITE);
+        this.offsetText.setTextStyle("settings-field", Color.WHITE);
+        this.resetText.setTextStyle("settings-field", Color.WHITE);
+        this.applyText.setTextStyle("settings-field", Color.WHITE);
+        this.centerPane.setStyle("-fx-background-color: rgb(50, 50, 50)");
+        this.mainPane.setStyle("-fx-background-color: rgb(20, 20, 20)");
+    }
+
+    private void setupKeyListener() {
+        this.addEventHandler(KeyEvent.KEY_PRESSED, new EventHandler<KeyEvent>() {
+            @Override
+            public void handle(KeyEvent event) {
+                // stamp the tap before anything else, like a press in a song
+                long now = System.nanoTime();
+                switch (event.getCode()) {
+                    case SPACE:
+                        if (conductor != null) {
+                            updateText(calibration.tap(conductor.getPosition(now)));
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        });
+    }
+
+    private void updateText(double error) {
+        int taps = this.calibration.getCount();
+        this.tapText.setText(taps == 0 ? "Last tap: -" : String.format("Last tap: %+.0f ms", error));
+        this.offsetText.setText(String.format("Offset: %.0f ms (%d taps)", this.calibration.getOffset(), taps));
+    }
+
+    /**
+     * Starts the metronome, looping it until stopped
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void start() {
+        File track = new File(METRONOME_PATH);
+        OffsetCalibration.writeMetronome(track);
+        this.metronome = new MediaPlayer(new Media(track.toURI().toString()));
+        this.metronome.setVolume(this.settings.getMusicVolume());
+        // no offset, so the taps measure the whole delay
+        SongConductor clock = new SongConductor(this.metronome);
+        this.loop = new GameLoop() {
+            @Override
+            public void tick(float secondsSinceLastFrame) {
+                if (clock.update() == 1) {
+                    clock.start();
+                }
+            }
+        };
+        this.metronome.setOnReady(() -> {
+            clock.start();
+            this.loop.start();
+            // taps only count once the metronome is actually playing
+            this.conductor = clock;
+        });
+    }
+
+    /**
+     * Stops the metronome
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     */
+    public void stop() {
+        if (this.loop != null) {
+            this.loop.stop();
+        }
+        if (this.metronome != null) {
+            this.metronome.dispose();
+        }
+        this.conductor = null;
+    }
+
+    /**
+     * Gets the audio offset the taps so far point to
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the offset in ms
+     */
+    public double getOffset() {
+        return this.calibration.getOffset();
+    }
+
+    /**
+     * Gets the back button
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the back button
+     */
+    public StyleText getBackButton() {
+        return this.backButton;
+    }
+
+    /**
+     * Gets the apply button
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the apply button
+     */
+    public StyleText getApplyButton() {
+        return this.applyText;
+    }
+}
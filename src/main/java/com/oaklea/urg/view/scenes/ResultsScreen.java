@@ -4,7 +4,9 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 
 import com.oaklea.urg.model.GameMetrics;
+import com.oaklea.urg.model.HitTimeline;
 import com.oaklea.urg.model.Song;
+import com.oaklea.urg.view.UI.HitErrorHistogram;
 import com.oaklea.urg.view.UI.StyleText;
 
 import javafx.geometry.Insets;
@@ -34,6 +36,8 @@ public class ResultsScreen extends Scene {
     StyleText grade;
     StyleText accuracy;
     StyleText score;
+    StyleText timing;
+    HitErrorHistogram histogram;
     GameMetrics results;
     Song song;
 
@@ -67,9 +71,14 @@ public class ResultsScreen extends Scene {
                 new BigDecimal(Double.toString(metrics.getAccuracy())).setScale(2, RoundingMode.HALF_UP)
                         + "% accurate");
         this.score = new StyleText(metrics.getScore() + " points");
+        HitTimeline timeline = metrics.getHitTimeline();
+        this.timing = new StyleText(String.format("%.2f UR, %+.1f ms average", timeline.getUnstableRate(),
+                timeline.getMeanError()));
+        this.histogram = new HitErrorHistogram(timeline, 600, 120);
         this.centerPane.setPrefSize(1920, 1080);
         this.centerPane.setAlignment(Pos.CENTER);
-        this.centerPane.getChildren().addAll(this.songInfo, this.grade, this.accuracy, this.score);
+        this.centerPane.getChildren().addAll(this.songInfo, this.grade, this.accuracy, this.score, this.histogram,
+                this.timing);
 
         // set up bottom pane
         this.bottomPane = new HBox();
@@ -112,6 +121,7 @@ public class ResultsScreen extends Scene {
         this.grade.setTextStyle("result-grade", gradeColor);
         this.score.setTextStyle("result-score", Color.WHITE);
         this.accuracy.setTextStyle("result-accuracy", Color.WHITE);
+        this.timing.setTextStyle("result-accuracy", Color.WHITE);
         this.backButton.setTextStyle("back-button", Color.WHITE);
         this.centerPane.setStyle("-fx-background-color: rgb(50, 50, 50)");
 
@@ -119,6 +129,20 @@ public class ResultsScreen extends Scene {
 
     }
 
+    /**
+     * Shows whether playing back a score's replay gave the same result as the
+     * saved score
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param matches if the results matched
+     */
+    public void showReplayCheck(boolean matches) {
+        StyleText check = new StyleText(matches ? "Replay matches the saved score" : "Replay does not match the saved score");
+        check.setTextStyle("result-accuracy", matches ? Color.LIMEGREEN : Color.RED);
+        this.centerPane.getChildren().add(check);
+    }
+
     /**
      * Gets the back button
      * 
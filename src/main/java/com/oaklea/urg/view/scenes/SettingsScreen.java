@@ -32,6 +32,7 @@ public class SettingsScreen extends Scene {
     LaneColorPicker colorPicker;
     StyleText hitsoundVolumeLabel;
     JFXSlider hitsoundVolumeSlider;
+    StyleText calibrateText;
     GlobalSettings settings;
 
     /**
@@ -66,12 +67,14 @@ public class SettingsScreen extends Scene {
         this.hitsoundVolumeLabel = new StyleText("Hitsound Volume");
         this.hitsoundVolumeSlider = new JFXSlider(0, 100, this.settings.getMusicVolume() * 100);
         this.colorPicker = new LaneColorPicker(this.settings);
+        this.calibrateText = new StyleText(
+                String.format("Calibrate Audio Offset (%.0f ms)", this.settings.getAudioOffset()));
         this.saveText = new StyleText("Save");
         this.saveText.setOnMouseClicked(e -> {
             this.settings.save("./bin/settings.gs");
         });
         this.centerPane.getChildren().addAll(this.musicVolumeLabel, this.musicVolumeSlider, this.hitsoundVolumeLabel,
-                this.hitsoundVolumeSlider, this.colorPicker, this.saveText);
+                this.hitsoundVolumeSlider, this.colorPicker, this.calibrateText, this.saveText);
 
         // set up bottom pane
         this.bottomPane = new HBox();
@@ -88,6 +91,7 @@ public class SettingsScreen extends Scene {
         this.backButton.setTextStyle("back-button", Color.WHITE);
         this.musicVolumeLabel.setTextStyle("settings-field", Color.WHITE);
         this.hitsoundVolumeLabel.setTextStyle("settings-field", Color.WHITE);
+        this.calibrateText.setTextStyle("settings-field", Color.WHITE);
         this.saveText.setTextStyle("settings-field", Color.WHITE);
         this.centerPane.setStyle("-fx-background-color: rgb(50, 50, 50)");
         this.mainPane.setStyle("-fx-background-color: rgb(20, 20, 20)");
@@ -115,6 +119,17 @@ public class SettingsScreen extends Scene {
         return this.hitsoundVolumeSlider;
     }
 
+    /**
+     * Gets the button for calibrating the audio offset
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the calibrate button
+     */
+    public StyleText getCalibrateButton() {
+        return this.calibrateText;
+    }
+
     /**
      * Gets the back button
      * 
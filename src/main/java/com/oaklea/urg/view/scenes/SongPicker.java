@@ -2,9 +2,10 @@ package com.oaklea.urg.view.scenes;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.function.BiConsumer;
 
 import com.oaklea.urg.model.GameMetrics;
+import com.oaklea.urg.model.Leaderboard;
 import com.oaklea.urg.model.Song;
 import com.oaklea.urg.model.SongGroup;
 import com.oaklea.urg.view.UI.ScoreItem;
@@ -17,6 +18,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.ScrollPane.ScrollBarPolicy;
 import javafx.scene.image.Image;
+import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.Background;
 import javafx.scene.layout.BackgroundFill;
 import javafx.scene.layout.BackgroundImage;
@@ -47,7 +49,12 @@ public class SongPicker extends Scene {
     ScrollPane scrollPane;
     VBox songListPane;
     StyleText backButton;
+    StyleText rateText;
     StyleText noScores;
+    StyleText moreButton;
+    Song scoresSong;
+    int scoresPage;
+    BiConsumer<GameMetrics, MouseEvent> onScoreClicked;
     ArrayList<SongGroupItem> songGroupItems;
     ArrayList<SongGroup> songGroups;
 
@@ -77,7 +84,10 @@ public class SongPicker extends Scene {
         this.topPane.setPadding(new Insets(0, 0, 0, 20));
         this.topPane.setAlignment(Pos.CENTER_LEFT);
         this.backButton = new StyleText("< Back");
-        this.topPane.getChildren().add(this.backButton);
+        this.rateText = new StyleText("");
+        this.setRate(1.0);
+        this.topPane.setSpacing(40);
+        this.topPane.getChildren().addAll(this.backButton, this.rateText);
 
         // set up middle pane
         // left side
@@ -98,6 +108,11 @@ public class SongPicker extends Scene {
         this.scoresBox.setPadding(new Insets(20));
         this.rightColumn.setPrefWidth(1920 / 2);
         this.noScores = new StyleText("No scores");
+        this.moreButton = new StyleText("More");
+        this.moreButton.setOnMouseClicked(e -> {
+            int pages = (this.scoresSong.getLeaderboard().size() + Leaderboard.TOP - 1) / Leaderboard.TOP;
+            this.renderScorePage((this.scoresPage + 1) % pages);
+        });
         this.rightColumn.setPadding(new Insets(10));
         this.rightColumn.getChildren().add(this.scoresBox);
         this.centerPane.getChildren().addAll(this.leftColumn, this.rightColumn);
@@ -116,9 +131,11 @@ public class SongPicker extends Scene {
     private void addStyle() {
         this.getStylesheets().add("UIStylesheet.css");
         this.backButton.setTextStyle("back-button", Color.WHITE);
+        this.rateText.setTextStyle("back-button", Color.WHITE);
         this.mainPane.setStyle("-fx-background-color: rgb(20, 20, 20)");
         this.scoresBox.getStyleClass().add("scores-box");
         this.noScores.setTextStyle("back-button", Color.WHITE);
+        this.moreButton.setTextStyle("back-button", Color.WHITE);
 
     }
 
@@ -150,28 +167,121 @@ public class SongPicker extends Scene {
 
     }
 
+    /**
+     * Renders a song group. If a group with the same title is already rendered
+     * it's replaced in place, otherwise the group is added to the end of the list
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param group the song group to render
+     * @return the SongGroupItem rendering the group
+     */
+    public SongGroupItem putSongGroup(SongGroup group) {
+        SongGroupItem item = new SongGroupItem(group);
+        for (int i = 0; i < this.songGroupItems.size(); i++) {
+            SongGroupItem old = this.songGroupItems.get(i);
+            if (old.getSongGroup().getTitle().equals(group.getTitle())) {
+                this.songGroupItems.set(i, item);
+                int index = this.songListPane.getChildren().indexOf(old);
+                this.songListPane.getChildren().set(index, item);
+                return item;
+            }
+        }
+        this.songGroupItems.add(item);
+        this.songListPane.getChildren().add(item);
+        return item;
+    }
+
+    /**
+     * Stops rendering a song group
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param title the title of the song group to remove
+     */
+    public void removeSongGroup(String title) {
+        for (int i = 0; i < this.songGroupItems.size(); i++) {
+            SongGroupItem item = this.songGroupItems.get(i);
+            if (item.getSongGroup().getTitle().equals(title)) {
+                this.songGroupItems.remove(i);
+                this.songListPane.getChildren().remove(item);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Renders the best scores of a song
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param song the song to render the scores of
+     */
     public void renderScores(Song song) {
-        ArrayList<GameMetrics> scores = song.getScores();
+        this.scoresSong = song;
+        this.renderScorePage(0);
+    }
+
+    private void renderScorePage(int page) {
+        Leaderboard leaderboard = this.scoresSong.getLeaderboard();
+        this.scoresPage = page;
         this.scoresBox.getChildren().clear();
-        if (scores.size() == 0) {
+        if (leaderboard.size() == 0) {
             this.scoresBox.setAlignment(Pos.CENTER);
             this.scoresBox.getChildren().add(this.noScores);
-        } else {
-            // sort scores
-            scores.sort(new Comparator<GameMetrics>() {
-                @Override
-                public int compare(GameMetrics o1, GameMetrics o2) {
-                    return o2.getScore() - o1.getScore();
+            return;
+        }
+        this.scoresBox.setAlignment(Pos.TOP_CENTER);
+        for (GameMetrics gm : leaderboard.getPage(page, Leaderboard.TOP)) {
+            ScoreItem item = new ScoreItem(gm);
+            item.setOnMouseClicked(e -> {
+                if (this.onScoreClicked != null) {
+                    this.onScoreClicked.accept(gm, e);
                 }
             });
-            for (GameMetrics gm : scores) {
-                this.scoresBox.setAlignment(Pos.TOP_CENTER);
-                this.scoresBox.getChildren().add(new ScoreItem(gm));
-
-            }
+            this.scoresBox.getChildren().add(item);
+        }
+        int pages = (leaderboard.size() + Leaderboard.TOP - 1) / Leaderboard.TOP;
+        if (pages > 1) {
+            // cycles through the older pages and back to the best scores
+            this.moreButton.setText(page + 1 < pages ? "More (" + (page + 1) + "/" + pages + ")" : "Back to top");
+            this.scoresBox.getChildren().add(this.moreButton);
         }
     }
 
+    /**
+     * Gets the song whose scores are being rendered
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the song
+     */
+    public Song getScoresSong() {
+        return this.scoresSong;
+    }
+
+    /**
+     * Sets what happens when a rendered score is clicked
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param handler called with the score and the click
+     */
+    public void setOnScoreClicked(BiConsumer<GameMetrics, MouseEvent> handler) {
+        this.onScoreClicked = handler;
+    }
+
+    /**
+     * Shows the rate songs will be played at
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param rate the playback rate
+     */
+    public void setRate(double rate) {
+        this.rateText.setText(String.format("Rate: %.1fx (-/+)", rate));
+    }
+
     /**
      * Gets the back button
      * 
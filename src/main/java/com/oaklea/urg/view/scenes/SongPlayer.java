@@ -23,6 +23,8 @@ import javafx.scene.paint.Color;
  */
 public class SongPlayer extends Scene {
 
+    static final double PRACTICE_SKIP_MS = 5000;
+
     Pane mainPane;
     BorderPane gamePane;
     PauseScreen pauseScreen;
@@ -32,6 +34,8 @@ public class SongPlayer extends Scene {
     Song song;
     boolean isPaused;
     boolean autoplay;
+    boolean practice;
+    double checkpoint;
     GlobalSettings settings;
 
     /**
@@ -46,11 +50,35 @@ public class SongPlayer extends Scene {
      * @param settings the global settings
      */
     public SongPlayer(Song song, Pane pane, boolean autoplay, GameLogic logic, GlobalSettings settings) {
+        this(song, pane, autoplay, false, 0, logic, settings);
+    }
+
+    /**
+     * Creates a new Song Player with the given parameters. In practice mode the
+     * player can jump around the song: left and right skip back and forward, the
+     * number keys jump to a tenth of the way through the song, P sets a
+     * checkpoint and R goes back to it. The song starts from startMs, which is
+     * the checkpoint until another is set
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param song     the song that will play
+     * @param pane     the pane to attach to
+     * @param autoplay whether the game will play automatically or not
+     * @param practice whether the game is in practice mode or not
+     * @param startMs  the point in the song to start from in ms
+     * @param logic    the game logic
+     * @param settings the global settings
+     */
+    public SongPlayer(Song song, Pane pane, boolean autoplay, boolean practice, double startMs, GameLogic logic,
+            GlobalSettings settings) {
         super(pane);
         this.mainPane = pane;
         this.song = song;
         this.logic = logic;
         this.autoplay = autoplay;
+        this.practice = practice;
+        this.checkpoint = startMs;
         this.settings = settings;
         initGamePane();
         initPausePane();
@@ -78,8 +106,19 @@ public class SongPlayer extends Scene {
     }
 
     private void initGameLogic() {
-        this.song.readInNotes();
-        this.logic.startGame();
+        this.song.readInNotes(this.logic.getRate());
+        this.logic.startGame(this.checkpoint);
+    }
+
+    /**
+     * Gets the last checkpoint set in practice mode
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @return the checkpoint in ms
+     */
+    public double getCheckpoint() {
+        return this.checkpoint;
     }
 
     /**
@@ -115,29 +154,38 @@ public class SongPlayer extends Scene {
         this.setOnKeyPressed(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
+                // stamp the press before anything else so it's judged at the
+                // moment it arrived, not at the last step of the game
+                long now = System.nanoTime();
                 switch (event.getCode()) {
                     case ESCAPE:
                         togglePauseScreen();
                         break;
                     case T:
                         break;
+                    case F3:
+                        logic.toggleProfile();
+                        break;
                     case D:
                         if (!autoplay)
-                            logic.pressLane(0);
+                            logic.pressLane(0, now);
                         break;
                     case F:
                         if (!autoplay)
-                            logic.pressLane(1);
+                            logic.pressLane(1, now);
                         break;
                     case J:
                         if (!autoplay)
-                            logic.pressLane(2);
+                            logic.pressLane(2, now);
                         break;
                     case K:
                         if (!autoplay)
-                            logic.pressLane(3);
+                            logic.pressLane(3, now);
                         break;
                     default:
+                        if (practice) {
+                            handlePracticeKey(event);
+                        }
                         break;
                 }
             }
@@ -146,22 +194,23 @@ public class SongPlayer extends Scene {
         this.setOnKeyReleased(new EventHandler<KeyEvent>() {
             @Override
             public void handle(KeyEvent event) {
+                long now = System.nanoTime();
                 switch (event.getCode()) {
                     case D:
                         if (!autoplay)
-                            logic.releaseLane(0);
+                            logic.releaseLane(0, now);
                         break;
                     case F:
                         if (!autoplay)
-                            logic.releaseLane(1);
+                            logic.releaseLane(1, now);
                         break;
                     case J:
                         if (!autoplay)
-                            logic.releaseLane(2);
+                            logic.releaseLane(2, now);
                         break;
                     case K:
                         if (!autoplay)
-                            logic.releaseLane(3);
+                            logic.releaseLane(3, now);
                         break;
                     default:
                         break;
@@ -170,4 +219,28 @@ public class SongPlayer extends Scene {
         });
 
     }
+
+    private void handlePracticeKey(KeyEvent event) {
+        switch (event.getCode()) {
+            case LEFT:
+                this.logic.seek(this.logic.getPosition() - PRACTICE_SKIP_MS);
+                break;
+            case RIGHT:
+                this.logic.seek(this.logic.getPosition() + PRACTICE_SKIP_MS);
+                break;
+            case P:
+                this.checkpoint = this.logic.getPosition();
+                break;
+            case R:
+                this.logic.seek(this.checkpoint);
+                break;
+            default:
+                if (event.getCode().isDigitKey()) {
+                    // 1 through 9 jump to 10% through 90% of the song
+                    int digit = event.getCode().getName().charAt(event.getCode().getName().length() - 1) - '0';
+                    this.logic.seek(this.song.getNotes().getLastEndTime() * digit / 10);
+                }
+                break;
+        }
+    }
 }
@@ -3,14 +3,15 @@ package com.oaklea.urg.view.visuals;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.Iterator;
 
-import com.oaklea.urg.model.GameMetrics;
+import com.oaklea.urg.model.FramePhase;
+import com.oaklea.urg.model.FrameProfiler;
+import com.oaklea.urg.model.GameSnapshot;
+import com.oaklea.urg.model.TimingHistogram;
 import com.oaklea.urg.model.GlobalSettings;
 
 import javafx.scene.text.Font;
 import javafx.scene.text.TextAlignment;
-import javafx.geometry.Point2D;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.image.Image;
@@ -26,13 +27,34 @@ import javafx.scene.paint.Color;
  */
 public class GameRenderer {
 
+    static final int NOTE_SIZE = 50;
+    // fonts and colors are made once, so drawing a frame allocates nothing
+    static final Font JUDGEMENT_FONT = new Font("Arial", 15);
+    static final Font COMBO_FONT = new Font("Arial", 50);
+    static final Font HEADER_FONT = new Font("Arial", 30);
+    static final Font COUNT_FONT = new Font("Arial", 20);
+    static final Color DIMMER = new Color(0, 0, 0, 0.5);
+    static final Color OVERLAY = new Color(0, 0, 0, 0.7);
+    // the stats that are drawn as text, which is only rebuilt when they change
+    static final int COMBO = 0;
+    static final int ACCURACY = 1;
+    static final int SCORE = 2;
+    static final int PERFECTS = 3;
+    static final int GREATS = 4;
+    static final int GOODS = 5;
+    static final int OKS = 6;
+    static final int MISSES = 7;
+
     Canvas canvas;
     AnchorPane anchor;
     GraphicsContext context;
     ArrayList<ArrayList<NoteEntity>> notes;
+    NotePool pool;
     Image background;
-    boolean[] light;
     GlobalSettings settings;
+    Color[] laneColors;
+    String[] labels;
+    double[] labelValues;
 
     /**
      * Creates a new GameRenderer
@@ -50,49 +72,17 @@ public class GameRenderer {
         this.background = background;
         this.context = canvas.getGraphicsContext2D();
         this.notes = new ArrayList<ArrayList<NoteEntity>>();
-        this.light = new boolean[4];
         this.settings = settings;
+        this.pool = new NotePool(NOTE_SIZE, NOTE_SIZE);
+        // settings can't change in the middle of a song
+        this.laneColors = settings.getLaneColors();
+        this.labels = new String[MISSES + 1];
+        this.labelValues = new double[MISSES + 1];
         for (int i = 0; i < 4; i++) {
             this.notes.add(new ArrayList<NoteEntity>());
         }
     }
 
-    /**
-     * Adds a NoteEntity to be rendered
-     * 
-     * @author Aidan Oakley
-     * @version 1.0.0
-     * @param note the note entity
-     * @param lane the lane it will be in
-     */
-    public void addNote(NoteEntity note, int lane) {
-        this.notes.get(lane).add(note);
-    }
-
-    /**
-     * Removes a NoteEntity from rendering
-     * 
-     * @author Aidan Oakley
-     * @version 1.0.0
-     * @param note the note entity
-     * @param lane the lane it's in
-     */
-    public void removeNote(NoteEntity note, int lane) {
-        this.notes.get(lane).remove(note);
-    }
-
-    /**
-     * Removes a NoteEntity from rendering from a specific index
-     * 
-     * @author Aidan Oakley
-     * @version 1.0.0
-     * @param index the index of the note entity to remove
-     * @param lane  the lane it's in
-     */
-    public void removeNoteAt(int index, int lane) {
-        this.notes.get(lane).remove(index);
-    }
-
     /**
      * Gets the entities currently being rendered
      * 
@@ -105,83 +95,81 @@ public class GameRenderer {
     }
 
     /**
-     * Lights up a note receptor in a given lane
-     * 
-     * @author Aidan Oakley
-     * @version 1.0.0
-     * @param lane the lane to light up
-     */
-    public void lightReceptor(int lane) {
-        this.light[lane] = true;
-    }
-
-    /**
-     * Stops lighting up a note receptor in a given lane
+     * Renders all entities and metrics of the game at a step of the simulation
      * 
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param lane the lane to stop lighting
-     */
-    public void unlightReceptor(int lane) {
-        this.light[lane] = false;
-    }
-
-    /**
-     * Renders all entities and metrics of the game
-     * 
-     * @author Aidan Oakley
-     * @version 1.0.0
-     * @param songPosition          the position of the song in ms
-     * @param songLength            the length of the song in ms
-     * @param metrics               the game metrics
+     * @param snapshot              the state of the game to render
      * @param secondsSinceLastFrame the seconds since the last rendering
      */
-    public void render(double songPosition, double songLength, GameMetrics metrics, float secondsSinceLastFrame) {
+    public void render(GameSnapshot snapshot, float secondsSinceLastFrame) {
 
         this.context.save();
 
-        this.renderStats(songPosition, songLength, metrics);
-        this.renderJudgement(metrics);
-        this.renderNotes(songPosition);
+        this.renderStats(snapshot.getPosition(), snapshot.getSongLength(), snapshot);
+        this.renderJudgement(snapshot);
+        this.syncNotes(snapshot);
+        this.renderNotes(snapshot.getPosition());
 
         this.context.restore();
     }
 
+    private void syncNotes(GameSnapshot snapshot) {
+        for (int lane = 0; lane < this.notes.size(); lane++) {
+            ArrayList<NoteEntity> entities = this.notes.get(lane);
+            int count = snapshot.getNoteCount(lane);
+            // pending notes keep their order, so keep every entity whose note is
+            // still there and give the rest back to the pool
+            int kept = 0;
+            for (int i = 0; i < entities.size(); i++) {
+                NoteEntity entity = entities.get(i);
+                if (kept < count && entity.getNoteData() == snapshot.getNote(lane, kept)) {
+                    entities.set(kept++, entity);
+                } else {
+                    this.pool.release(entity);
+                }
+            }
+            for (int i = entities.size() - 1; i >= kept; i--) {
+                entities.remove(i);
+            }
+            for (; kept < count; kept++) {
+                entities.add(this.pool.acquire(snapshot.getNote(lane, kept),
+                        this.anchor.getWidth() / 2 - (570 / 2) + 125 + (lane * 90), -50));
+            }
+        }
+    }
+
     private void renderNotes(double songPosition) {
         int height = this.anchor.heightProperty().intValue();
-        // update every note
-        Iterator<ArrayList<NoteEntity>> laneItr = this.notes.iterator();
-        while (laneItr.hasNext()) {
-            Iterator<NoteEntity> noteItr = laneItr.next().iterator();
-            while (noteItr.hasNext()) {
-                NoteEntity note = noteItr.next();
-                double xcoord = note.getPosition().getX();
+        // update every note, by index so no iterators are made
+        for (int lane = 0; lane < this.notes.size(); lane++) {
+            ArrayList<NoteEntity> entities = this.notes.get(lane);
+            this.context.setFill(this.laneColors[lane]);
+            for (int i = 0; i < entities.size(); i++) {
+                NoteEntity note = entities.get(i);
                 double ycoord = height - 90 - (((note.getNoteData().getEndTime() - songPosition * 1000) + 50)
                         / (note.getNoteData().getEndTime() - note.getNoteData().getStartTime()) * (height - 90));
-                Color og = this.settings.getLaneColors()[note.getLane()];
-                this.context.setFill(og);
-                if (note.getNoteData().isFader()) {
-                    if (ycoord < height && ycoord > 0) {
-                        Color c = new Color(og.getRed(), og.getGreen(), og.getBlue(),
-                                ((height - ycoord) / height) * 1.0);
-                        this.context.setFill(c);
-                    }
-
+                // faders fade out as they fall, through the alpha of the context
+                // rather than a new color for every note
+                boolean fading = note.getNoteData().isFader() && ycoord < height && ycoord > 0;
+                if (fading) {
+                    this.context.setGlobalAlpha((height - ycoord) / height);
                 }
                 // amount of time it should be on screen for
                 // left / total = how far it is in percentage
-                note.setPosition(new Point2D(xcoord, ycoord));
-                Point2D pos = note.getPosition();
-                this.context.fillRoundRect(pos.getX(), pos.getY(), note.getWidth(), note.getHeight(), 10, 10);
-
+                note.setPosition(note.getX(), ycoord);
+                this.context.fillRoundRect(note.getX(), note.getY(), note.getWidth(), note.getHeight(), 10, 10);
+                if (fading) {
+                    this.context.setGlobalAlpha(1);
+                }
             }
         }
     }
 
-    private void renderJudgement(GameMetrics metrics) {
+    private void renderJudgement(GameSnapshot metrics) {
         int width = this.anchor.widthProperty().intValue();
         int height = this.anchor.heightProperty().intValue();
-        this.context.setFont(new Font("Arial", 15));
+        this.context.setFont(JUDGEMENT_FONT);
         // if there was a hit judgement, show it
         if (metrics.getPreviousJudgement() != null) {
             this.context.setTextAlign(TextAlignment.CENTER);
@@ -212,7 +200,7 @@ public class GameRenderer {
         }
     }
 
-    private void renderStats(double songPosition, double songLength, GameMetrics metrics) {
+    private void renderStats(double songPosition, double songLength, GameSnapshot metrics) {
         int width = this.anchor.widthProperty().intValue();
         int height = this.anchor.heightProperty().intValue();
         int laneStartLocation = width / 2 - (570 / 2);
@@ -228,35 +216,76 @@ public class GameRenderer {
         this.context.setTextBaseline(VPos.CENTER);
         this.context.setFill(Color.WHITE);
         // combo
-        this.context.setFont(new Font("Arial", 50));
-        this.context.fillText(metrics.getCombo() + "", width / 2, height / 2);
+        this.context.setFont(COMBO_FONT);
+        this.context.fillText(this.label(COMBO, metrics.getCombo()), width / 2, height / 2);
         // accuracy
         this.context.setTextAlign(TextAlignment.RIGHT);
-        this.context.setFont(new Font("Arial", 30));
-        this.context.fillText(
-                BigDecimal.valueOf(metrics.getAccuracy()).setScale(3, RoundingMode.HALF_UP).doubleValue() + "",
-                laneStartLocation - 10, 20);
+        this.context.setFont(HEADER_FONT);
+        this.context.fillText(this.label(ACCURACY, metrics.getAccuracy()), laneStartLocation - 10, 20);
         // score
         this.context.setTextAlign(TextAlignment.LEFT);
-        this.context.fillText(metrics.getScore() + "", laneStartLocation + 570 + 10, 20);
+        this.context.fillText(this.label(SCORE, metrics.getScore()), laneStartLocation + 570 + 10, 20);
 
         // hit counts
-        this.context.setFont(new Font("Arial", 20));
+        this.context.setFont(COUNT_FONT);
         this.context.strokeRoundRect(laneStartLocation - 70, 50, 60, 160, 5, 5);
-        this.context.setFill(new Color(0, 0, 0, 0.5));
+        this.context.setFill(DIMMER);
         this.context.fillRoundRect(laneStartLocation - 70, 50, 60, 160, 5, 5);
 
         this.context.setTextAlign(TextAlignment.CENTER);
         this.context.setFill(Color.GOLD);
-        this.context.fillText(metrics.getPerfects() + "", laneStartLocation - 40, 70);
+        this.context.fillText(this.label(PERFECTS, metrics.getPerfects()), laneStartLocation - 40, 70);
         this.context.setFill(Color.GREEN);
-        this.context.fillText(metrics.getGreats() + "", laneStartLocation - 40, 100);
+        this.context.fillText(this.label(GREATS, metrics.getGreats()), laneStartLocation - 40, 100);
         this.context.setFill(Color.YELLOW);
-        this.context.fillText(metrics.getGoods() + "", laneStartLocation - 40, 130);
+        this.context.fillText(this.label(GOODS, metrics.getGoods()), laneStartLocation - 40, 130);
         this.context.setFill(Color.BROWN);
-        this.context.fillText(metrics.getOKs() + "", laneStartLocation - 40, 160);
+        this.context.fillText(this.label(OKS, metrics.getOKs()), laneStartLocation - 40, 160);
         this.context.setFill(Color.RED);
-        this.context.fillText(metrics.getMisses() + "", laneStartLocation - 40, 190);
+        this.context.fillText(this.label(MISSES, metrics.getMisses()), laneStartLocation - 40, 190);
+    }
+
+    private String label(int stat, double value) {
+        // only make a new string when the stat changes
+        if (this.labels[stat] == null || this.labelValues[stat] != value) {
+            this.labelValues[stat] = value;
+            if (stat == ACCURACY) {
+                this.labels[stat] = BigDecimal.valueOf(value).setScale(3, RoundingMode.HALF_UP).doubleValue() + "";
+            } else {
+                this.labels[stat] = (long) value + "";
+            }
+        }
+        return this.labels[stat];
+    }
+
+    /**
+     * Renders how long each part of a frame and of a step of the game takes, at
+     * the 50th and 99th percentile and at worst, along with the garbage
+     * collection done since the song started
+     * 
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param profiler the profiler timing the game
+     */
+    public void renderProfile(FrameProfiler profiler) {
+        FramePhase[] phases = FramePhase.values();
+        this.context.save();
+        this.context.setFill(OVERLAY);
+        this.context.fillRect(10, 10, 300, 40 + (phases.length + 1) * 18);
+        this.context.setFont(Font.font("Monospaced", 14));
+        this.context.setTextAlign(TextAlignment.LEFT);
+        this.context.setTextBaseline(VPos.TOP);
+        this.context.setFill(Color.WHITE);
+        this.context.fillText(String.format("%-10s%9s%9s%9s", "us", "p50", "p99", "max"), 20, 20);
+        for (int i = 0; i < phases.length; i++) {
+            TimingHistogram histogram = profiler.getHistogram(phases[i]);
+            this.context.fillText(String.format("%-10s%9.1f%9.1f%9.1f", phases[i].name().toLowerCase(),
+                    histogram.getPercentile(50) / 1000.0, histogram.getPercentile(99) / 1000.0,
+                    histogram.getMax() / 1000.0), 20, 38 + i * 18);
+        }
+        this.context.fillText(String.format("gc %d runs, %d ms", profiler.getCollections(),
+                profiler.getCollectionMillis()), 20, 38 + phases.length * 18);
+        this.context.restore();
     }
 
     /**
@@ -264,8 +293,9 @@ public class GameRenderer {
      * 
      * @author Aidan Oakley
      * @version 1.0.0
+     * @param snapshot the state of the game to render
      */
-    public void prepare() {
+    public void prepare(GameSnapshot snapshot) {
         int width = this.anchor.widthProperty().intValue();
         int height = this.anchor.heightProperty().intValue();
         int laneStartLocation = width / 2 - (570 / 2);
@@ -275,11 +305,11 @@ public class GameRenderer {
         }
 
         // add transparent "dimmer" over image
-        this.context.setFill(new Color(0, 0, 0, 0.5));
+        this.context.setFill(DIMMER);
         this.context.fillRect(0, 0, width, height);
 
         // add another dimmer for lanes
-        this.context.setFill(new Color(0, 0, 0, 0.5));
+        this.context.setFill(DIMMER);
         this.context.fillRect(laneStartLocation, 0, 570, height);
 
         // add hit line
@@ -288,7 +318,7 @@ public class GameRenderer {
 
         // add note receptors
         for (int i = 0; i < 4; i++) {
-            if (this.light[i]) {
+            if (snapshot.isLit(i)) {
                 context.setFill(Color.ORANGE);
             } else {
                 context.setFill(Color.WHITE);
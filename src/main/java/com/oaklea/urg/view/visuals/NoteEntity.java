@@ -2,31 +2,29 @@ package com.oaklea.urg.view.visuals;
 
 import com.oaklea.urg.model.SongNote;
 
-import javafx.geometry.Point2D;
-import javafx.scene.shape.Rectangle;
-
 /**
- * Represents a note "block" that will render on screen
- * 
+ * Represents a note "block" that will render on screen. Entities are reused
+ * for note after note through a NotePool, so everything about one can be
+ * changed in place
+ *
  * @author Aidan Oakley
  * @version 1.0.0
  */
 public class NoteEntity {
 
-    Point2D position;
-    Rectangle rect;
+    double x;
+    double y;
     double width;
     double height;
     SongNote data;
 
     /**
-     * 
+     *
      * @param width
      * @param height
      * @param data
      */
     public NoteEntity(double width, double height, SongNote data) {
-        this.rect = new Rectangle(width, height);
         this.width = width;
         this.height = height;
         this.data = data;
@@ -34,7 +32,7 @@ public class NoteEntity {
 
     /**
      * Gets the lane this NoteEntity is in
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @return the lane this NoteEntity is in
@@ -44,42 +42,43 @@ public class NoteEntity {
     }
 
     /**
-     * Gets the position of the note
-     * 
+     * Gets the x coordinate of the note
+     *
      * @author Aidan Oakley
      * @version 1.0.0
-     * @return the position of the note
+     * @return the x coordinate of the note
      */
-    public Point2D getPosition() {
-        return position;
+    public double getX() {
+        return this.x;
     }
 
     /**
-     * Sets the position of the note
-     * 
+     * Gets the y coordinate of the note
+     *
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param x the new x coordinate
-     * @param y the new y coordinate
+     * @return the y coordinate of the note
      */
-    public void setPosition(double x, float y) {
-        this.position = new Point2D(x, y);
+    public double getY() {
+        return this.y;
     }
 
     /**
      * Sets the position of the note
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
-     * @param newPos the new position of the note
+     * @param x the new x coordinate
+     * @param y the new y coordinate
      */
-    public void setPosition(Point2D newPos) {
-        this.position = newPos;
+    public void setPosition(double x, double y) {
+        this.x = x;
+        this.y = y;
     }
 
     /**
      * Gets the width of the note
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @return the width of the note
@@ -90,7 +89,7 @@ public class NoteEntity {
 
     /**
      * Gets the height of the note
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @return the height of the note
@@ -101,7 +100,7 @@ public class NoteEntity {
 
     /**
      * Gets the note data associated with this entity
-     * 
+     *
      * @author Aidan Oakley
      * @version 1.0.0
      * @return the note data
@@ -110,4 +109,15 @@ public class NoteEntity {
         return this.data;
     }
 
+    /**
+     * Sets the note data associated with this entity
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param data the note data, or null once the entity is done with
+     */
+    public void setNoteData(SongNote data) {
+        this.data = data;
+    }
+
 }
@@ -0,0 +1,74 @@
+package com.oaklea.urg.view.visuals;
+
+import java.util.Arrays;
+
+import com.oaklea.urg.model.SongNote;
+
+/**
+ * A stack of NoteEntities that are done with, so notes that are hit or missed
+ * hand their entity on to the next note to spawn. Once the pool has grown to
+ * the most notes ever on screen at once, spawning never allocates
+ *
+ * @author Aidan Oakley
+ * @version 1.0.0
+ */
+class NotePool {
+
+    final double width;
+    final double height;
+    NoteEntity[] free;
+    int size;
+
+    /**
+     * Creates a new, empty NotePool
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param width  the width of every entity
+     * @param height the height of every entity
+     */
+    NotePool(double width, double height) {
+        this.width = width;
+        this.height = height;
+        this.free = new NoteEntity[64];
+    }
+
+    /**
+     * Gets an entity for a note, reusing one if there are any free
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param data the note
+     * @param x    the x coordinate of the note
+     * @param y    the y coordinate of the note
+     * @return the entity
+     */
+    NoteEntity acquire(SongNote data, double x, double y) {
+        NoteEntity entity;
+        if (this.size == 0) {
+            entity = new NoteEntity(this.width, this.height, data);
+        } else {
+            entity = this.free[--this.size];
+            this.free[this.size] = null;
+            entity.setNoteData(data);
+        }
+        entity.setPosition(x, y);
+        return entity;
+    }
+
+    /**
+     * Gives an entity back to be reused
+     *
+     * @author Aidan Oakley
+     * @version 1.0.0
+     * @param entity the entity, which mustn't be used again until it's acquired
+     */
+    void release(NoteEntity entity) {
+        // don't keep the note alive through the pool
+        entity.setNoteData(null);
+        if (this.size == this.free.length) {
+            this.free = Arrays.copyOf(this.free, this.size * 2);
+        }
+        this.free[this.size++] = entity;
+    }
+}